@@ -0,0 +1,17 @@
+package com.attvin.cluster;
+
+/**
+ * Carries events to the other instances of the application, so each one can
+ * update its in-memory state (caches, search index, counters) after a write
+ * on another instance.
+ *
+ * {@link #publish} is called inside the writing transaction, when the change
+ * is made, so the event must not be sent before the transaction commits and
+ * must be dropped if it rolls back. Implementations that cannot take part in
+ * the transaction must defer sending until after commit. Events received from other instances
+ * are published locally as {@link RemoteClusterEvent}s.
+ */
+public interface ClusterEventBus {
+
+    void publish(Object event);
+}
@@ -0,0 +1,62 @@
+package com.attvin.cluster;
+
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.event.MaterialPicturesChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Connects the local events to the {@link ClusterEventBus}.
+ *
+ * Material changes are handed to the bus as they happen, inside their
+ * transaction, and events received from other instances are published
+ * again locally, so the existing listeners (detail cache, search index,
+ * stats counters) apply them as if the write had happened here. Replayed events are not sent back
+ * to the bus.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClusterEventRelay {
+
+    /**
+     * Event types that are broadcast to the other instances.
+     */
+    public static final List<Class<?>> BROADCAST_TYPES =
+            List.of(MaterialChangedEvent.class, MaterialPicturesChangedEvent.class);
+
+    private static final ThreadLocal<Boolean> replaying = ThreadLocal.withInitial(() -> false);
+
+    private final ClusterEventBus clusterEventBus;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Not a BEFORE_COMMIT listener: a bus that defers to commit must be able to register with the transaction
+    @EventListener
+    public void onMaterialChanged(MaterialChangedEvent event) {
+        forward(event);
+    }
+
+    @EventListener
+    public void onMaterialPicturesChanged(MaterialPicturesChangedEvent event) {
+        forward(event);
+    }
+
+    @EventListener
+    public void onRemoteEvent(RemoteClusterEvent remote) {
+        replaying.set(true);
+        try {
+            eventPublisher.publishEvent(remote.getEvent());
+        } finally {
+            replaying.set(false);
+        }
+    }
+
+    private void forward(Object event) {
+        if (!replaying.get()) {
+            clusterEventBus.publish(event);
+        }
+    }
+}
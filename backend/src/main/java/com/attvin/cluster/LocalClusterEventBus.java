@@ -0,0 +1,17 @@
+package com.attvin.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bus for a single instance, and the stand-in used by tests: there are no
+ * other instances to notify, so events are not sent anywhere.
+ */
+@Component
+@ConditionalOnProperty(name = "material.cluster.bus", havingValue = "local", matchIfMissing = true)
+public class LocalClusterEventBus implements ClusterEventBus {
+
+    @Override
+    public void publish(Object event) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.attvin.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bus backed by the cluster_events table (a transactional outbox). Events
+ * are inserted in the writing transaction, so they become visible to the
+ * other instances exactly when the write commits, and are lost with it on
+ * rollback. The events of one transaction are collected and inserted with
+ * a single batch just before it commits. Every instance polls the table for
+ * the rows of the others.
+ *
+ * Auto-increment IDs are not committed in order, so a poll does not resume
+ * after the highest ID seen: it re-reads the rows of the last
+ * {@link #OVERLAP} and skips the ones it already delivered. Rows are deleted
+ * after retention-hours.
+ */
+@Component
+@ConditionalOnProperty(name = "material.cluster.bus", havingValue = "outbox")
+public class OutboxClusterEventBus implements ClusterEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxClusterEventBus.class);
+
+    // Longer than any write transaction is expected to take, plus clock skew between instances
+    static final Duration OVERLAP = Duration.ofSeconds(30);
+
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, Class<?>> eventTypes = new HashMap<>();
+    // Delivered row IDs within the overlap, in creation order
+    private final LinkedHashMap<Long, Instant> delivered = new LinkedHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration retention;
+
+    private Instant lastPoll = Instant.now();
+
+    public OutboxClusterEventBus(JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${material.cluster.retention-hours:1}") long retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.retention = Duration.ofHours(retentionHours);
+        for (Class<?> type : ClusterEventRelay.BROADCAST_TYPES) {
+            eventTypes.put(type.getSimpleName(), type);
+        }
+    }
+
+    /**
+     * Queues the event for the current transaction. The events of a
+     * transaction are written with one batch just before it commits; without
+     * a transaction the event is written right away.
+     */
+    @Override
+    public void publish(Object event) {
+        Object[] row = new Object[] {origin, event.getClass().getSimpleName(), serialize(event), null};
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(List.<Object[]>of(row));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> pending = (List<Object[]>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Object[]> rows = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, rows);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insert(rows);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OutboxClusterEventBus.this);
+                }
+            });
+            pending = rows;
+        }
+        pending.add(row);
+    }
+
+    /**
+     * Delivers the events that other instances committed since the last poll.
+     */
+    @Scheduled(fixedDelayString = "${material.cluster.poll-interval-ms:1000}")
+    public synchronized void poll() {
+        Instant now = Instant.now();
+        Instant since = lastPoll.minus(OVERLAP);
+        lastPoll = now;
+
+        jdbcTemplate.query(
+                "SELECT id, event_type, payload, created_at FROM cluster_events"
+                        + " WHERE created_at >= ? AND origin <> ? ORDER BY id",
+                rs -> {
+                    long id = rs.getLong("id");
+                    if (delivered.containsKey(id)) {
+                        return;
+                    }
+                    delivered.put(id, rs.getTimestamp("created_at").toInstant());
+                    deliver(id, rs.getString("event_type"), rs.getString("payload"));
+                },
+                Timestamp.from(since), origin);
+
+        Iterator<Instant> createdAt = delivered.values().iterator();
+        while (createdAt.hasNext()) {
+            if (createdAt.next().isBefore(since)) {
+                createdAt.remove();
+            }
+        }
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelay = 600_000)
+    public void deleteExpiredEvents() {
+        int deleted = jdbcTemplate.update("DELETE FROM cluster_events WHERE created_at < ?",
+                Timestamp.from(Instant.now().minus(retention)));
+        if (deleted > 0) {
+            logger.info("Deleted {} expired cluster events", deleted);
+        }
+    }
+
+    String getOrigin() {
+        return origin;
+    }
+
+    private String serialize(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize cluster event " + event, e);
+        }
+    }
+
+    /**
+     * Helper method to write outbox rows, all with the same creation time
+     */
+    private void insert(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        for (Object[] row : rows) {
+            row[3] = createdAt;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO cluster_events (origin, event_type, payload, created_at) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    private void deliver(long id, String eventType, String payload) {
+        Class<?> type = eventTypes.get(eventType);
+        if (type == null) {
+            // Written by a newer version of the application; its caches expire on their own
+            logger.warn("Skipping cluster event {} of unknown type {}", id, eventType);
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new RemoteClusterEvent(objectMapper.readValue(payload, type)));
+        } catch (JsonProcessingException e) {
+            logger.warn("Skipping unreadable cluster event {}", id, e);
+        } catch (RuntimeException e) {
+            // One failing listener must not stop delivery of the remaining events
+            logger.warn("Failed to apply cluster event {}", id, e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.attvin.cluster;
+
+import lombok.Value;
+
+/**
+ * Published locally by a {@link ClusterEventBus} for each event received
+ * from another instance.
+ */
+@Value
+public class RemoteClusterEvent {
+    Object event;
+}
@@ -1,15 +1,78 @@
 package com.attvin.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Executor for thumbnail generation. Both the thread count and the queue
+     * are bounded so a burst of uploads cannot exhaust memory; work that does
+     * not fit in the queue is dropped and picked up again on the next request.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor thumbnailExecutor(
+            @Value("${material.pictures.thumbnails.threads:2}") int threads,
+            @Value("${material.pictures.thumbnails.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Executor for background import jobs. Imports are long-running and
+     * database-heavy, so only a few run at once and only a few may wait.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor importExecutor(
+            @Value("${material.import.threads:2}") int threads,
+            @Value("${material.import.queue-capacity:10}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "import-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Executor for the parse stage of imports, shared by all running imports.
+     * Defaults to one thread per core. When it is saturated the import's
+     * reader parses the batch itself instead of queueing more work.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor importParseExecutor(
+            @Value("${material.import.parse-threads:0}") int threads) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2 * poolSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "import-parse-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -5,6 +5,7 @@ import com.attvin.repository.MaterialRepository;
 import com.attvin.repository.MaterialPictureRepository;
 import com.attvin.repository.UserRepository;
 import com.attvin.repository.AuditTrailRepository;
+import com.attvin.storage.PictureStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +14,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -27,6 +31,9 @@ public class DataInitializer {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PictureStorage pictureStorage;
+
     /**
      * Initialize database with sample data
      */
@@ -257,7 +264,11 @@ public class DataInitializer {
             0x1F, 0x27, 0x39, 0x3D, 0x38, 0x32, 0x3C, 0x2E, 0x33, 0x34, 0x32
         };
         
-        picture.setPictureData(dummyImageData);
+        try {
+            picture.setStorageKey(pictureStorage.store(new ByteArrayInputStream(dummyImageData)).getKey());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store sample picture", e);
+        }
         picture.setFileSize((long) dummyImageData.length);
         picture.setDescription("Sample image for " + material.getName());
         
@@ -0,0 +1,56 @@
+package com.attvin.config;
+
+import com.attvin.storage.PictureStorage;
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves picture bytes from the original material_pictures.picture_data
+ * column into the PictureStorage and records their storage keys. It is a
+ * Java migration so it can use the configured storage; Spring Boot hands
+ * it to Flyway as a bean.
+ */
+@Component
+@RequiredArgsConstructor
+public class V2__MovePicturesToStorage extends BaseJavaMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(V2__MovePicturesToStorage.class);
+
+    private final PictureStorage pictureStorage;
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        // Read the bytes in batches instead of the whole table at once
+        jdbcTemplate.setFetchSize(50);
+
+        jdbcTemplate.execute("ALTER TABLE material_pictures ADD COLUMN storage_key VARCHAR(64)");
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, picture_data FROM material_pictures", resultSet -> {
+            try (InputStream content = resultSet.getBinaryStream(2)) {
+                String key = pictureStorage.store(content).getKey();
+                updates.add(new Object[] {key, resultSet.getLong(1)});
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to move picture " + resultSet.getLong(1) + " to storage", e);
+            }
+        });
+        jdbcTemplate.batchUpdate("UPDATE material_pictures SET storage_key = ? WHERE id = ?", updates);
+
+        jdbcTemplate.execute("ALTER TABLE material_pictures MODIFY COLUMN storage_key VARCHAR(64) NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE material_pictures DROP COLUMN picture_data");
+        jdbcTemplate.execute("CREATE INDEX idx_material_pictures_storage_key ON material_pictures (storage_key)");
+        logger.info("Moved {} pictures from material_pictures.picture_data to picture storage", updates.size());
+    }
+}
@@ -3,7 +3,9 @@ package com.attvin.controller;
 import com.attvin.dto.AuditTrailDTO;
 import com.attvin.repository.AuditTrailRepository;
 import com.attvin.model.AuditTrail;
+import com.attvin.service.MaterialService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,38 +18,48 @@ import java.util.stream.Collectors;
 public class AuditTrailController {
 
     private final AuditTrailRepository auditTrailRepository;
+    private final MaterialService materialService;
+    
+    // Entries are written when materials are seeded and show material names, so
+    // they are tagged with the material change token, like the material lists.
+    // Any new writer of audit entries must publish a material change with them.
     
     @GetMapping
-    public ResponseEntity<List<AuditTrailDTO>> getRecentActivity() {
-        List<AuditTrail> recentActivity = auditTrailRepository.findAllByOrderByTimestampDesc();
-        
-        List<AuditTrailDTO> activityDTOs = recentActivity.stream()
-                .map(AuditTrailDTO::fromEntity)
-                .limit(10) // Limit to the 10 most recent activities
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(activityDTOs);
+    public ResponseEntity<List<AuditTrailDTO>> getRecentActivity(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalRequests.respond(ifNoneMatch, materialService.getChangeToken(), () -> {
+            List<AuditTrail> recentActivity = auditTrailRepository.findAllByOrderByTimestampDesc();
+            
+            return recentActivity.stream()
+                    .map(AuditTrailDTO::fromEntity)
+                    .limit(10) // Limit to the 10 most recent activities
+                    .collect(Collectors.toList());
+        });
     }
     
     @GetMapping("/material/{materialId}")
-    public ResponseEntity<List<AuditTrailDTO>> getMaterialActivity(@PathVariable Long materialId) {
-        List<AuditTrail> materialActivity = auditTrailRepository.findByMaterialId(materialId);
-        
-        List<AuditTrailDTO> activityDTOs = materialActivity.stream()
-                .map(AuditTrailDTO::fromEntity)
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(activityDTOs);
+    public ResponseEntity<List<AuditTrailDTO>> getMaterialActivity(
+            @PathVariable Long materialId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalRequests.respond(ifNoneMatch, materialService.getChangeToken(), () -> {
+            List<AuditTrail> materialActivity = auditTrailRepository.findByMaterialId(materialId);
+            
+            return materialActivity.stream()
+                    .map(AuditTrailDTO::fromEntity)
+                    .collect(Collectors.toList());
+        });
     }
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<AuditTrailDTO>> getUserActivity(@PathVariable Long userId) {
-        List<AuditTrail> userActivity = auditTrailRepository.findByUserIdOrderByTimestampDesc(userId);
-        
-        List<AuditTrailDTO> activityDTOs = userActivity.stream()
-                .map(AuditTrailDTO::fromEntity)
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(activityDTOs);
+    public ResponseEntity<List<AuditTrailDTO>> getUserActivity(
+            @PathVariable Long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalRequests.respond(ifNoneMatch, materialService.getChangeToken(), () -> {
+            List<AuditTrail> userActivity = auditTrailRepository.findByUserIdOrderByTimestampDesc(userId);
+            
+            return userActivity.stream()
+                    .map(AuditTrailDTO::fromEntity)
+                    .collect(Collectors.toList());
+        });
     }
 } 
\ No newline at end of file
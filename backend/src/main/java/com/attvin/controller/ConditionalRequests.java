@@ -0,0 +1,49 @@
+package com.attvin.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Conditional GETs whose ETag is known before the response body is loaded.
+ * Spring MVC also answers If-None-Match for any ResponseEntity with an ETag,
+ * but only after the body has been built; here a matching request returns
+ * 304 without running any query or mapping for the body.
+ */
+final class ConditionalRequests {
+
+    // Clients may keep responses, but must revalidate them before each use
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private ConditionalRequests() {
+    }
+
+    static <T> ResponseEntity<T> respond(String ifNoneMatch, String eTag, Supplier<T> body) {
+        if (matches(ifNoneMatch, eTag)) {
+            return notModified(eTag);
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).body(body.get());
+    }
+
+    static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Weak comparison of an If-None-Match header with the current tag, as RFC 9110 specifies for GET
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (ETag candidate : ETag.parse(ifNoneMatch)) {
+            if (candidate.isWildcard() || candidate.tag().equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,76 @@
+package com.attvin.controller;
+
+import com.attvin.dto.ImportJobDTO;
+import com.attvin.io.ImportMode;
+import com.attvin.service.ImportJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Background Excel imports. Starting an import returns a job ID straight
+ * away; the job can then be polled for progress, cancelled, and once it has
+ * finished, its per-row error report downloaded.
+ */
+@RestController
+@RequestMapping("/api/materials/import-jobs")
+@RequiredArgsConstructor
+public class ImportJobController {
+
+    private final ImportJobService importJobService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> startImport(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "mode", defaultValue = "CREATE") ImportMode mode) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body("Please upload a non-empty Excel file");
+        }
+
+        if (file.getOriginalFilename() == null || !file.getOriginalFilename().endsWith(".xlsx")) {
+            return ResponseEntity.badRequest().body("Please upload an Excel file (.xlsx format)");
+        }
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importJobService.startExcelImport(file, mode));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJobDTO> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(importJobService.getJob(jobId));
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<ImportJobDTO> cancelJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(importJobService.cancelJob(jobId));
+    }
+
+    /**
+     * Downloads the rows that could not be imported as CSV (row number, reason).
+     */
+    @GetMapping("/{jobId}/errors")
+    public ResponseEntity<Resource> getErrorReport(@PathVariable String jobId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType("text", "csv"));
+        headers.setContentDispositionFormData("attachment", "import-" + jobId + "-errors.csv");
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(importJobService.getErrorReport(jobId));
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<String> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> handleConflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
@@ -1,17 +1,36 @@
 package com.attvin.controller;
 
+import com.attvin.dto.ImportSummaryDTO;
+import com.attvin.dto.MaterialExportFilter;
 import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.dto.MaterialSliceDTO;
+import com.attvin.dto.MaterialSort;
 import com.attvin.dto.MaterialStatsDTO;
+import com.attvin.io.ExcelTemplate;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialTextFormat;
 import com.attvin.service.MaterialService;
+import com.attvin.storage.PictureResource;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -20,6 +39,10 @@ import java.util.List;
 public class MaterialController {
     
     private final MaterialService materialService;
+
+    // How far X-Export-Timestamp is set back from the start of an export; must cover the longest write transaction
+    @Value("${material.export.watermark-safety-seconds:300}")
+    private long watermarkSafetySeconds;
     
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<MaterialRecordDTO> createMaterial(
@@ -28,9 +51,30 @@ public class MaterialController {
         return ResponseEntity.ok(materialService.createMaterial(materialDTO, pictures));
     }
     
+    /**
+     * The ETag is the material's version. A conditional request is checked
+     * against the stored version first, so a 304 costs one indexed lookup.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<MaterialRecordDTO> getMaterial(@PathVariable Long id) {
-        return ResponseEntity.ok(materialService.getMaterialById(id));
+    public ResponseEntity<MaterialRecordDTO> getMaterial(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            String current = materialETag(materialService.getMaterialVersion(id));
+            if (ConditionalRequests.matches(ifNoneMatch, current)) {
+                return ConditionalRequests.notModified(current);
+            }
+        }
+        // Tagged with the version it was mapped from, which a cached DTO may lag behind
+        MaterialRecordDTO material = materialService.getMaterialById(id);
+        return ResponseEntity.ok()
+                .eTag(materialETag(material.getVersion()))
+                .cacheControl(ConditionalRequests.REVALIDATE)
+                .body(material);
+    }
+
+    private static String materialETag(Long version) {
+        return "v" + version;
     }
     
     @PutMapping("/{id}")
@@ -46,19 +90,48 @@ public class MaterialController {
         return ResponseEntity.noContent().build();
     }
     
+    /**
+     * Lists and statistics are tagged with the change token, which moves on
+     * every material change; each URL is cached by the client on its own.
+     */
     @GetMapping
     public ResponseEntity<Page<MaterialRecordDTO>> searchMaterials(
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String condition,
             @RequestParam(required = false) String query,
-            Pageable pageable) {
-        return ResponseEntity.ok(materialService.searchMaterials(category, type, condition, query, pageable));
+            Pageable pageable,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalRequests.respond(ifNoneMatch, materialService.getChangeToken(),
+                () -> materialService.searchMaterials(category, type, condition, query, pageable));
+    }
+    
+    /**
+     * Cursor-based listing for scrolling through large result sets. Pass the
+     * nextCursor of one page, with the same filters and sort, to get the next;
+     * every page costs the same as the first. Text queries are served by the
+     * paged search above.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<MaterialSliceDTO> listMaterials(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String condition,
+            @RequestParam(defaultValue = "NEWEST") MaterialSort sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalRequests.respond(ifNoneMatch, materialService.getChangeToken(),
+                () -> materialService.listMaterials(category, type, condition, sort, cursor, size, includeTotal));
     }
     
     @GetMapping("/stats")
-    public ResponseEntity<MaterialStatsDTO> getMaterialStats() {
-        return ResponseEntity.ok(materialService.getMaterialStats());
+    public ResponseEntity<MaterialStatsDTO> getMaterialStats(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Recent additions also change as time passes; they are counted per hour
+        String eTag = materialService.getChangeToken() + "-" + Instant.now().getEpochSecond() / 3600;
+        return ConditionalRequests.respond(ifNoneMatch, eTag, materialService::getMaterialStats);
     }
     
 
@@ -86,19 +159,48 @@ public class MaterialController {
         materialService.setPrimaryPicture(materialId, pictureId);
         return ResponseEntity.ok().build();
     }
-      @GetMapping("/pictures/{pictureId}")
-    public ResponseEntity<byte[]> getPicture(@PathVariable Long pictureId) {
-        byte[] pictureData = materialService.getPictureData(pictureId);
+    
+    /**
+     * Streams a picture to the client. Spring MVC answers Range requests with
+     * 206 partial content and If-None-Match / If-Modified-Since with 304,
+     * based on the headers set here.
+     *
+     * With a size, the smallest generated thumbnail at least that many pixels
+     * on its longest edge is returned instead, falling back to the original
+     * until the thumbnails exist.
+     */
+    @GetMapping("/pictures/{pictureId}")
+    public ResponseEntity<Resource> getPicture(
+            @PathVariable Long pictureId,
+            @RequestParam(required = false) Integer size) {
+        PictureResource picture = materialService.getPicture(pictureId, size);
         return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_JPEG) // You might want to make this dynamic based on the actual image type
-                .body(pictureData);
+                .contentType(parseContentType(picture.getContentType()))
+                .contentLength(picture.contentLength())
+                .eTag(picture.getETag())
+                .lastModified(picture.getLastModified())
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.inline().filename(picture.getFilename()).build().toString())
+                .body(picture);
+    }
+    
+    private MediaType parseContentType(String contentType) {
+        try {
+            return contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
     }
     
     /**
-     * Endpoint for importing materials from Excel
+     * Endpoint for importing materials from Excel. With mode=UPSERT, rows that
+     * match a stored material update it or are skipped instead of duplicating it.
      */
     @PostMapping(value = "/import-excel", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<String> importMaterialsFromExcel(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<String> importMaterialsFromExcel(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "mode", defaultValue = "CREATE") ImportMode mode) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body("Please upload a non-empty Excel file");
         }
@@ -108,51 +210,124 @@ public class MaterialController {
         }
 
         try {
-            materialService.importMaterialsFromExcel(file);
-            return ResponseEntity.ok("Materials imported successfully");
+            ImportSummaryDTO summary = materialService.importMaterialsFromExcel(file, mode);
+            return ResponseEntity.ok(String.format(
+                    "Materials imported successfully: %d created, %d updated, %d unchanged, %d failed",
+                    summary.getRowsCreated(), summary.getRowsUpdated(), summary.getRowsSkipped(), summary.getRowsFailed()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error importing materials: " + e.getMessage());
         }
     }
 
     /**
-     * Endpoint for exporting materials to Excel
-     */    @GetMapping("/export-excel")
-    public ResponseEntity<byte[]> exportMaterialsToExcel() {
+     * Endpoint for exporting materials to Excel. The workbook is written to the
+     * response as it is generated, so memory use does not grow with the inventory.
+     *
+     * All exports take the search filters (category, type, condition, query)
+     * and modifiedSince. For incremental syncs, pass the X-Export-Timestamp of
+     * the previous export as modifiedSince to receive what changed since; the
+     * overlap with the previous export may repeat a few unchanged materials.
+     */
+    @GetMapping("/export-excel")
+    public ResponseEntity<StreamingResponseBody> exportMaterialsToExcel(MaterialExportFilter filter) {
+        HttpHeaders headers = startExport(filter);
+        headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+        headers.setContentDispositionFormData("attachment", "materials.xlsx");
+        headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
+        
+        StreamingResponseBody body = outputStream -> materialService.exportMaterialsToExcel(outputStream, filter);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+    
+    /**
+     * Endpoints for importing materials from CSV or NDJSON, e.g. from other
+     * systems. The request body is the data itself and is parsed line by line
+     * as it arrives. Columns and keys are the ones written by the matching export.
+     */
+    @PostMapping(value = "/import-csv", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<?> importMaterialsFromCsv(
+            InputStream content,
+            @RequestParam(value = "mode", defaultValue = "CREATE") ImportMode mode) {
+        return importMaterials(content, MaterialTextFormat.CSV, mode);
+    }
+
+    @PostMapping(value = "/import-ndjson", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<?> importMaterialsFromNdjson(
+            InputStream content,
+            @RequestParam(value = "mode", defaultValue = "CREATE") ImportMode mode) {
+        return importMaterials(content, MaterialTextFormat.NDJSON, mode);
+    }
+
+    private ResponseEntity<?> importMaterials(InputStream content, MaterialTextFormat format, ImportMode mode) {
         try {
-            byte[] excelContent = materialService.exportMaterialsToExcel();
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
-            headers.setContentDispositionFormData("attachment", "materials.xlsx");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(excelContent);
+            return ResponseEntity.ok(materialService.importMaterials(content, format, mode));
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
+            return ResponseEntity.badRequest().body("Error importing materials: " + e.getMessage());
         }
     }
+
+    /**
+     * Endpoints for exporting materials as CSV or NDJSON, streamed like the Excel export
+     */
+    @GetMapping("/export-csv")
+    public ResponseEntity<StreamingResponseBody> exportMaterialsToCsv(MaterialExportFilter filter) {
+        return exportMaterials(MaterialTextFormat.CSV, filter);
+    }
+
+    @GetMapping("/export-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportMaterialsToNdjson(MaterialExportFilter filter) {
+        return exportMaterials(MaterialTextFormat.NDJSON, filter);
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportMaterials(MaterialTextFormat format, MaterialExportFilter filter) {
+        HttpHeaders headers = startExport(filter);
+        headers.setContentType(new MediaType(MediaType.parseMediaType(format.getContentType()), StandardCharsets.UTF_8));
+        headers.setContentDispositionFormData("attachment", "materials." + format.getExtension());
+        headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
+
+        StreamingResponseBody body = outputStream -> materialService.exportMaterials(outputStream, format, filter);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * Helper method to check the filter before the response starts streaming, so an
+     * invalid one is answered with 400, and to set the export watermark.
+     *
+     * last_modified is set when a change is flushed, not when it commits, so a change
+     * flushed just before the export started may only become visible after the export
+     * has read past it. The watermark is therefore set back by the safety window, and
+     * the next incremental export re-reads that window.
+     */
+    private HttpHeaders startExport(MaterialExportFilter filter) {
+        materialService.validateExportFilter(filter);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Export-Timestamp", LocalDateTime.now().minusSeconds(watermarkSafetySeconds).toString());
+        return headers;
+    }
     
     /**
-     * Endpoint for generating an Excel template
+     * Endpoint for the Excel import template. The template is generated once
+     * and cached; Spring MVC answers If-None-Match with 304 based on its ETag.
      */
     @GetMapping("/excel-template")
     public ResponseEntity<byte[]> getExcelTemplate() {
-        try {
-            byte[] templateContent = materialService.generateExcelTemplate();
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
-            headers.setContentDispositionFormData("attachment", "material-template.xlsx");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(templateContent);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+        ExcelTemplate template = materialService.getExcelTemplate();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .eTag(template.getETag())
+                .cacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("material-template.xlsx").build().toString())
+                .body(template.getContent());
+    }
+
+    // Invalid filters and cursors
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
-}
\ No newline at end of file
+}
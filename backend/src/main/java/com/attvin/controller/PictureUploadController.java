@@ -0,0 +1,84 @@
+package com.attvin.controller;
+
+import com.attvin.dto.MaterialPictureDTO;
+import com.attvin.dto.PictureUploadDTO;
+import com.attvin.service.PictureUploadService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+
+/**
+ * Chunked picture upload: start an upload, PUT its chunks (in any order, and
+ * again after an interruption), then complete it to attach the picture to
+ * the material. GET returns which chunks have been received so far.
+ */
+@RestController
+@RequestMapping("/api/materials/{materialId}/pictures/uploads")
+@RequiredArgsConstructor
+public class PictureUploadController {
+
+    private final PictureUploadService pictureUploadService;
+
+    @PostMapping
+    public ResponseEntity<PictureUploadDTO> startUpload(
+            @PathVariable Long materialId,
+            @RequestBody PictureUploadDTO upload) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(pictureUploadService.startUpload(materialId, upload));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<PictureUploadDTO> getUpload(
+            @PathVariable Long materialId,
+            @PathVariable String uploadId) {
+        return ResponseEntity.ok(pictureUploadService.getUpload(materialId, uploadId));
+    }
+
+    /**
+     * Stores one chunk. The optional X-Chunk-SHA256 header is checked against
+     * the received bytes; on a mismatch the chunk is not recorded and must be resent.
+     */
+    @PutMapping(value = "/{uploadId}/chunks/{index}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<PictureUploadDTO> writeChunk(
+            @PathVariable Long materialId,
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+            InputStream content) {
+        return ResponseEntity.ok(pictureUploadService.writeChunk(materialId, uploadId, index, sha256, content));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<MaterialPictureDTO> completeUpload(
+            @PathVariable Long materialId,
+            @PathVariable String uploadId) {
+        return ResponseEntity.ok(pictureUploadService.completeUpload(materialId, uploadId));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> cancelUpload(
+            @PathVariable Long materialId,
+            @PathVariable String uploadId) {
+        pictureUploadService.cancelUpload(materialId, uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<String> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> handleConflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
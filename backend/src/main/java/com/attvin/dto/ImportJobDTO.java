@@ -0,0 +1,25 @@
+package com.attvin.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class ImportJobDTO {
+    private String jobId;
+    private String fileName;
+    // CREATE or UPSERT
+    private String mode;
+    // QUEUED, RUNNING, COMPLETED, FAILED or CANCELLED
+    private String status;
+    private long rowsRead;
+    private long rowsCreated;
+    private long rowsUpdated;
+    private long rowsSkipped;
+    private long rowsFailed;
+    private double rowsPerSecond;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // Set when the job as a whole failed, e.g. because the file is not a valid workbook
+    private String errorMessage;
+}
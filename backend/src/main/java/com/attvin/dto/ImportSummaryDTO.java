@@ -0,0 +1,13 @@
+package com.attvin.dto;
+
+import lombok.Data;
+
+@Data
+public class ImportSummaryDTO {
+    // CREATE or UPSERT
+    private String mode;
+    private long rowsCreated;
+    private long rowsUpdated;
+    private long rowsSkipped;
+    private long rowsFailed;
+}
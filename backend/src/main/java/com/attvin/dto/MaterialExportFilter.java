@@ -0,0 +1,20 @@
+package com.attvin.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional filters for exports; the first four match those of the material search.
+ */
+@Data
+public class MaterialExportFilter {
+    private String category;
+    private String type;
+    private String condition;
+    private String query;
+    // Only materials created or updated at or after this time
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime modifiedSince;
+}
@@ -14,6 +14,8 @@ public class MaterialRecordDTO {
     private String color;
     private String notes;
     private LocalDateTime dateAdded;
+    private LocalDateTime lastModified;
+    private Long version;
     private List<MaterialPictureDTO> pictures;
     
     // Additional fields for specific material types
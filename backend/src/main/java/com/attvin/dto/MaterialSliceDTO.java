@@ -0,0 +1,17 @@
+package com.attvin.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the cursor-based material listing.
+ */
+@Data
+public class MaterialSliceDTO {
+    private List<MaterialRecordDTO> content;
+    // Pass back as the cursor for the next page; null on the last page
+    private String nextCursor;
+    // Only set when requested
+    private Long totalCount;
+}
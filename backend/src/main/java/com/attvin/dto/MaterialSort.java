@@ -0,0 +1,12 @@
+package com.attvin.dto;
+
+/**
+ * Orders of the cursor-based material listing. Both end with the ID, so
+ * every material has a unique position to continue from.
+ */
+public enum MaterialSort {
+    /** Most recently added first: dateAdded descending, then ID descending. */
+    NEWEST,
+    /** Alphabetical: name ascending, then ID ascending. */
+    NAME
+}
@@ -0,0 +1,20 @@
+package com.attvin.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class PictureUploadDTO {
+    private String uploadId;
+    private Long materialId;
+    private String fileName;
+    private String contentType;
+    private String description;
+    private Long totalSize;
+    // Optional SHA-256 (hex) of the whole file, verified when the upload is completed
+    private String sha256;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    // Indexes of the chunks stored so far, so an interrupted client knows what to resend
+    private List<Integer> receivedChunks;
+}
@@ -0,0 +1,65 @@
+package com.attvin.event;
+
+import com.attvin.model.MaterialRecord;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by the material service whenever a material is created, updated
+ * or deleted. Listeners that keep derived state (counters, caches) should
+ * consume it after the surrounding transaction commits.
+ */
+@Value
+public class MaterialChangedEvent {
+
+    Long materialId;
+    ChangeType changeType;
+    Snapshot before; // null for CREATED
+    Snapshot after;  // null for DELETED
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static MaterialChangedEvent created(MaterialRecord material) {
+        return new MaterialChangedEvent(material.getId(), ChangeType.CREATED, null, Snapshot.of(material));
+    }
+
+    public static MaterialChangedEvent updated(Snapshot before, MaterialRecord material) {
+        return new MaterialChangedEvent(material.getId(), ChangeType.UPDATED, before, Snapshot.of(material));
+    }
+
+    public static MaterialChangedEvent deleted(Snapshot before) {
+        return new MaterialChangedEvent(before.getMaterialId(), ChangeType.DELETED, before, null);
+    }
+
+    /**
+     * The searchable and aggregate-relevant attributes of a material at one point in time.
+     */
+    @Value
+    public static class Snapshot {
+        Long materialId;
+        String name;
+        String notes;
+        String color;
+        String category;
+        String materialType;
+        String materialCondition;
+        LocalDateTime dateAdded;
+
+        public static Snapshot of(MaterialRecord material) {
+            return new Snapshot(
+                    material.getId(),
+                    material.getName(),
+                    material.getNotes(),
+                    material.getColor(),
+                    material.getCategory(),
+                    material.getClass().getSimpleName(),
+                    material.getMaterialCondition(),
+                    material.getDateAdded());
+        }
+    }
+}
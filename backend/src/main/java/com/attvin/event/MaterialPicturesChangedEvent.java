@@ -0,0 +1,14 @@
+package com.attvin.event;
+
+import lombok.Value;
+
+/**
+ * Published when pictures of a material are added or removed, or its primary
+ * picture changes. Unlike {@link PicturesAddedEvent} and
+ * {@link PicturesRemovedEvent}, which are about stored content, this tells
+ * listeners that the material's own picture list changed.
+ */
+@Value
+public class MaterialPicturesChangedEvent {
+    Long materialId;
+}
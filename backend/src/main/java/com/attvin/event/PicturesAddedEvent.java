@@ -0,0 +1,14 @@
+package com.attvin.event;
+
+import lombok.Value;
+
+import java.util.Collection;
+
+/**
+ * Published when picture rows are added. After commit, derived content such
+ * as thumbnails can be generated for the stored keys.
+ */
+@Value
+public class PicturesAddedEvent {
+    Collection<String> storageKeys;
+}
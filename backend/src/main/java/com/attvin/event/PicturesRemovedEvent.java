@@ -0,0 +1,14 @@
+package com.attvin.event;
+
+import lombok.Value;
+
+import java.util.Collection;
+
+/**
+ * Published when picture rows are deleted. After commit, content whose
+ * storage key is no longer referenced by any picture can be removed.
+ */
+@Value
+public class PicturesRemovedEvent {
+    Collection<String> storageKeys;
+}
@@ -0,0 +1,14 @@
+package com.attvin.io;
+
+import lombok.Value;
+
+/**
+ * The generated Excel import template with the ETag it is served under.
+ * The ETag is derived from the template version and the enum values it
+ * lists, so it is the same on every instance and clients revalidate cheaply.
+ */
+@Value
+public class ExcelTemplate {
+    byte[] content;
+    String eTag;
+}
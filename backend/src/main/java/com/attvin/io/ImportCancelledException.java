@@ -0,0 +1,12 @@
+package com.attvin.io;
+
+/**
+ * Thrown by an import that stopped because its listener asked it to. Chunks
+ * committed before that stay imported.
+ */
+public class ImportCancelledException extends RuntimeException {
+
+    public ImportCancelledException() {
+        super("The import was cancelled", null, false, false);
+    }
+}
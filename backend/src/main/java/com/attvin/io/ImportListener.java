@@ -0,0 +1,32 @@
+package com.attvin.io;
+
+/**
+ * Receives the progress of an import. All callbacks are made from the thread
+ * that runs the import, in source row order.
+ */
+public interface ImportListener {
+
+    /** Called for every row taken from the source, whether or not it can be imported. */
+    default void rowRead() {
+    }
+
+    /** Called after a chunk of rows has been committed. */
+    default void rowsCreated(int count) {
+    }
+
+    /** Called after a chunk of rows has been committed; upsert imports only. */
+    default void rowsUpdated(int count) {
+    }
+
+    /** Called for a row that matches a stored material with the same values; upsert imports only. */
+    default void rowSkipped() {
+    }
+
+    default void rowFailed(RowError error) {
+    }
+
+    /** Checked between chunks; returning true stops the import with an {@link ImportCancelledException}. */
+    default boolean isCancelled() {
+        return false;
+    }
+}
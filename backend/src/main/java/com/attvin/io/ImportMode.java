@@ -0,0 +1,15 @@
+package com.attvin.io;
+
+/**
+ * How imported rows are matched against the materials already stored.
+ */
+public enum ImportMode {
+    /** Every valid row creates a new material. */
+    CREATE,
+    /**
+     * Rows are matched by their ID column, or else by the configured natural
+     * key. A match is updated if any value differs and skipped otherwise;
+     * rows without a match create a new material.
+     */
+    UPSERT
+}
@@ -0,0 +1,65 @@
+package com.attvin.io;
+
+import com.attvin.dto.MaterialRecordDTO;
+
+import java.util.Locale;
+
+/**
+ * The column layout shared by every bulk format. Excel and CSV use the
+ * headers, NDJSON uses the MaterialRecordDTO property names as keys. Values
+ * are read back into a DTO by {@link MaterialRow#toMaterialDTO()}.
+ */
+public final class MaterialColumns {
+
+    public static final String[] HEADERS = {
+        "Name", "Category", "Material Type", "Condition", "Color", "Notes",
+        "Width", "Height", "Depth",
+        "Desk Type", "Height Adjustable", "Max Height",
+        "Opening Type", "Hinge Side", "U-Value",
+        "Swing Direction", "Has Wheels", "ID"
+    };
+
+    public static final String[] FIELDS = {
+        "name", "category", "materialType", "materialCondition", "color", "notes",
+        "width", "height", "depth",
+        "deskType", "heightAdjustable", "maximumHeight",
+        "openingType", "hingeSide", "uValue",
+        "swingDirection", "hasWheels", "id"
+    };
+
+    private MaterialColumns() {
+    }
+
+    /**
+     * Returns the values of the DTO in column order: String, Double, Boolean,
+     * Long or null.
+     */
+    public static Object[] values(MaterialRecordDTO dto) {
+        return new Object[] {
+            dto.getName(), dto.getCategory(), dto.getMaterialType(), dto.getMaterialCondition(),
+            dto.getColor(), dto.getNotes(),
+            dto.getWidth(), dto.getHeight(), dto.getDepth(),
+            dto.getDeskType(), dto.getHeightAdjustable(), dto.getMaximumHeight(),
+            dto.getOpeningType(), dto.getHingeSide(), dto.getUValue(),
+            dto.getSwingDirection(), dto.getHasWheels(), dto.getId()
+        };
+    }
+
+    /**
+     * Finds the column for a header or field name, ignoring case, spaces,
+     * dashes and underscores. Returns -1 for an unknown name.
+     */
+    public static int indexOf(String name) {
+        String wanted = normalize(name);
+        for (int i = 0; i < HEADERS.length; i++) {
+            if (normalize(HEADERS[i]).equals(wanted) || normalize(FIELDS[i]).equals(wanted)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalize(String name) {
+        return name.replaceAll("[\\s_-]", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,149 @@
+package com.attvin.io;
+
+import com.attvin.dto.MaterialRecordDTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of an imported material sheet, held as the text of each cell.
+ * The column layout is the one written by the Excel template and export:
+ * Name, Category, Material Type, Condition, Color, Notes, Width, Height,
+ * Depth, Desk Type, Height Adjustable, Max Height, Opening Type, Hinge Side,
+ * U-Value, Swing Direction, Has Wheels, and optionally the material ID
+ * (written by the export, so an exported sheet can be re-imported as an upsert).
+ * See {@link MaterialColumns}.
+ */
+public class MaterialRow {
+
+    public static final int ID_COLUMN = 17;
+    public static final int COLUMN_COUNT = 18;
+
+    private final int rowNumber;
+    private final String[] cells;
+    private final String error;
+
+    public MaterialRow(int rowNumber, String[] cells) {
+        this(rowNumber, cells, null);
+    }
+
+    private MaterialRow(int rowNumber, String[] cells, String error) {
+        this.rowNumber = rowNumber;
+        this.cells = cells;
+        this.error = error;
+    }
+
+    /**
+     * Returns a row that could not be read, e.g. a malformed JSON line. It is
+     * reported as failed when imported instead of stopping the import.
+     */
+    public static MaterialRow invalid(int rowNumber, String error) {
+        return new MaterialRow(rowNumber, new String[COLUMN_COUNT], error);
+    }
+
+    /**
+     * Returns the 1-based row number in the source file, for error messages.
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    public boolean isBlank() {
+        if (error != null) {
+            return false;
+        }
+        for (String cell : cells) {
+            if (cell != null && !cell.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the row to a material DTO using the standard column layout.
+     */
+    public MaterialRecordDTO toMaterialDTO() {
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        MaterialRecordDTO materialDTO = new MaterialRecordDTO();
+        
+        // Basic fields
+        materialDTO.setName(getString(0));
+        materialDTO.setCategory(getString(1));
+        materialDTO.setMaterialType(getString(2));
+        materialDTO.setMaterialCondition(getString(3));
+        materialDTO.setColor(getString(4));
+        materialDTO.setNotes(getString(5));
+        
+        // Dimensions
+        materialDTO.setWidth(getDouble(6));
+        materialDTO.setHeight(getDouble(7));
+        materialDTO.setDepth(getDouble(8));
+        
+        // Type-specific fields
+        materialDTO.setDeskType(getString(9));
+        materialDTO.setHeightAdjustable(getBoolean(10));
+        materialDTO.setMaximumHeight(getDouble(11));
+        materialDTO.setOpeningType(getString(12));
+        materialDTO.setHingeSide(getString(13));
+        materialDTO.setUValue(getDouble(14));
+        materialDTO.setSwingDirection(getString(15));
+        materialDTO.setHasWheels(getBoolean(16));
+        materialDTO.setId(getId());
+        
+        // Set creation date
+        materialDTO.setDateAdded(LocalDateTime.now());
+        return materialDTO;
+    }
+
+    /**
+     * Helper method to get cell value as string
+     */
+    public String getString(int cellIndex) {
+        if (cellIndex >= cells.length) {
+            return null;
+        }
+        String value = cells[cellIndex];
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Returns the material ID from the optional ID column, or null when it is empty.
+     */
+    public Long getId() {
+        Double id = getDouble(ID_COLUMN);
+        return id != null ? id.longValue() : null;
+    }
+
+    /**
+     * Helper method to get cell value as double
+     */
+    public Double getDouble(int cellIndex) {
+        String value = getString(cellIndex);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Helper method to get cell value as boolean. Numeric cells are true when non-zero.
+     */
+    public Boolean getBoolean(int cellIndex) {
+        String value = getString(cellIndex);
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        Double number = getDouble(cellIndex);
+        return number != null ? number != 0 : Boolean.FALSE;
+    }
+}
@@ -0,0 +1,109 @@
+package com.attvin.io;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Reads the first sheet of an .xlsx file row by row with POI's event model.
+ * The sheet XML is parsed with SAX and each row is handed to the consumer as
+ * soon as it ends, so memory use does not depend on the number of rows.
+ *
+ * The file is opened from disk rather than from a stream, as opening a
+ * package from a stream buffers the whole archive in memory.
+ */
+public final class MaterialSheetReader {
+
+    private MaterialSheetReader() {
+    }
+
+    /**
+     * Passes every non-blank row after the header row to the consumer.
+     */
+    public static void read(File xlsxFile, Consumer<MaterialRow> rowConsumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(xlsxFile, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, null, strings, new RowCollector(rowConsumer), new RawNumberFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to read Excel file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects the cells of the current row and emits the row when it ends.
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<MaterialRow> rowConsumer;
+        private String[] cells;
+
+        RowCollector(Consumer<MaterialRow> rowConsumer) {
+            this.rowConsumer = rowConsumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new String[MaterialRow.COLUMN_COUNT];
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // Skip the header row
+            if (rowNum == 0) {
+                return;
+            }
+            MaterialRow row = new MaterialRow(rowNum + 1, cells);
+            if (!row.isBlank()) {
+                rowConsumer.accept(row);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (column < cells.length) {
+                cells[column] = formattedValue;
+            }
+        }
+    }
+
+    /**
+     * Renders numeric cells as their plain value instead of applying the cell's
+     * number format, matching Cell.getNumericCellValue() in the DOM API.
+     */
+    private static final class RawNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            return String.valueOf(value);
+        }
+    }
+}
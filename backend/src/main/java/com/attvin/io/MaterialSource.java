@@ -0,0 +1,13 @@
+package com.attvin.io;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * A source of imported rows, such as an Excel sheet or a CSV stream. Rows
+ * are passed to the consumer one at a time, in source order.
+ */
+@FunctionalInterface
+public interface MaterialSource {
+    void read(Consumer<MaterialRow> rowConsumer) throws IOException;
+}
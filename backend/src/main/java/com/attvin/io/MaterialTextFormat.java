@@ -0,0 +1,27 @@
+package com.attvin.io;
+
+/**
+ * Line-oriented bulk formats, for integrations that do not need Excel.
+ */
+public enum MaterialTextFormat {
+    /** RFC 4180 CSV with a header row naming the columns. */
+    CSV("text/csv", "csv"),
+    /** One JSON object per line, keyed by MaterialRecordDTO property names. */
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    MaterialTextFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,192 @@
+package com.attvin.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads CSV or NDJSON material rows one line at a time, so memory use does
+ * not depend on the size of the input. Row numbers are the 1-based line
+ * numbers where the rows start; in CSV, line 1 is the header.
+ */
+public final class MaterialTextReader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private MaterialTextReader() {
+    }
+
+    /**
+     * Passes every non-blank row to the consumer. The stream is not closed.
+     */
+    public static void read(InputStream content, MaterialTextFormat format, Consumer<MaterialRow> rowConsumer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+        switch (format) {
+            case CSV -> readCsv(reader, rowConsumer);
+            case NDJSON -> readNdjson(reader, rowConsumer);
+        }
+    }
+
+    private static void readCsv(BufferedReader reader, Consumer<MaterialRow> rowConsumer) throws IOException {
+        CsvRecords records = new CsvRecords(reader);
+        List<String> header = records.next();
+        if (header == null) {
+            return;
+        }
+
+        // Columns are matched by header name, so they may come in any order
+        int[] columns = new int[header.size()];
+        boolean known = false;
+        for (int i = 0; i < columns.length; i++) {
+            String name = i == 0 ? header.get(i).replace("\uFEFF", "") : header.get(i);
+            columns[i] = MaterialColumns.indexOf(name);
+            known |= columns[i] >= 0;
+        }
+        if (!known) {
+            throw new IOException("The CSV header row names none of the material columns");
+        }
+
+        List<String> fields;
+        while ((fields = records.next()) != null) {
+            String[] cells = new String[MaterialRow.COLUMN_COUNT];
+            for (int i = 0; i < Math.min(fields.size(), columns.length); i++) {
+                if (columns[i] >= 0 && !fields.get(i).isEmpty()) {
+                    cells[columns[i]] = fields.get(i);
+                }
+            }
+            MaterialRow row = new MaterialRow(records.recordLine(), cells);
+            if (!row.isBlank()) {
+                rowConsumer.accept(row);
+            }
+        }
+    }
+
+    private static void readNdjson(BufferedReader reader, Consumer<MaterialRow> rowConsumer) throws IOException {
+        // The same few keys repeat on every line
+        Map<String, Integer> columnsByKey = new HashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            MaterialRow row;
+            try {
+                row = new MaterialRow(lineNumber, parseJsonObject(line, columnsByKey));
+            } catch (JsonProcessingException e) {
+                row = MaterialRow.invalid(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+            }
+            if (!row.isBlank()) {
+                rowConsumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Helper method to read the scalar members of one JSON object into cells, ignoring unknown keys
+     */
+    private static String[] parseJsonObject(String line, Map<String, Integer> columnsByKey) throws IOException {
+        String[] cells = new String[MaterialRow.COLUMN_COUNT];
+        try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Each line must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int column = columnsByKey.computeIfAbsent(parser.currentName(), MaterialColumns::indexOf);
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                } else if (column >= 0 && value != JsonToken.VALUE_NULL) {
+                    cells[column] = parser.getText();
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the JSON object");
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Splits CSV text into records. A quoted field may span several lines;
+     * the fields list is reused between records.
+     */
+    private static final class CsvRecords {
+        private final BufferedReader reader;
+        private final List<String> fields = new ArrayList<>(MaterialRow.COLUMN_COUNT);
+        private final StringBuilder field = new StringBuilder();
+        private int lineNumber;
+        private int recordLine;
+
+        CsvRecords(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        int recordLine() {
+            return recordLine;
+        }
+
+        List<String> next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            recordLine = ++lineNumber;
+            fields.clear();
+            field.setLength(0);
+
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    // The quoted field continues on the next line
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IOException("Unterminated quoted field in the record starting on line " + recordLine);
+                    }
+                    lineNumber++;
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.attvin.io;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes material rows as CSV or NDJSON straight to an output stream. Rows
+ * are the column values from {@link MaterialColumns#values}; nothing but the
+ * current row is held in memory.
+ */
+public final class MaterialTextWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final MaterialTextFormat format;
+    private final Writer csv;
+    private final JsonGenerator json;
+
+    public MaterialTextWriter(OutputStream out, MaterialTextFormat format) throws IOException {
+        this.format = format;
+        if (format == MaterialTextFormat.CSV) {
+            csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            json = null;
+            writeCsvRecord(MaterialColumns.HEADERS);
+        } else {
+            csv = null;
+            json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            json.setRootValueSeparator(null);
+        }
+    }
+
+    public void writeRow(Object[] values) throws IOException {
+        if (format == MaterialTextFormat.CSV) {
+            writeCsvRecord(values);
+        } else {
+            writeJsonLine(values);
+        }
+    }
+
+    /**
+     * Writes out buffered rows. The output stream is left open.
+     */
+    public void flush() throws IOException {
+        if (csv != null) {
+            csv.flush();
+        } else {
+            json.flush();
+        }
+    }
+
+    private void writeCsvRecord(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.write(',');
+            }
+            if (values[i] instanceof String text) {
+                writeCsvText(text);
+            } else if (values[i] instanceof Double number) {
+                csv.write(formatNumber(number));
+            } else if (values[i] != null) {
+                csv.write(values[i].toString());
+            }
+        }
+        csv.write("\r\n");
+    }
+
+    /**
+     * Helper method to write a CSV field, quoting it only when it needs to be
+     */
+    private void writeCsvText(String text) throws IOException {
+        boolean quote = !text.isEmpty() && (Character.isWhitespace(text.charAt(0))
+                || Character.isWhitespace(text.charAt(text.length() - 1)));
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            csv.write(text);
+            return;
+        }
+        csv.write('"');
+        csv.write(text.replace("\"", "\"\""));
+        csv.write('"');
+    }
+
+    private void writeJsonLine(Object[] values) throws IOException {
+        json.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            json.writeFieldName(MaterialColumns.FIELDS[i]);
+            if (value instanceof Double number) {
+                json.writeNumber(number);
+            } else if (value instanceof Long number) {
+                json.writeNumber(number);
+            } else if (value instanceof Boolean flag) {
+                json.writeBoolean(flag);
+            } else {
+                json.writeString(value.toString());
+            }
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    /**
+     * Helper method to write whole numbers without a trailing ".0"
+     */
+    private static String formatNumber(double number) {
+        if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+            return Long.toString((long) number);
+        }
+        return Double.toString(number);
+    }
+}
@@ -0,0 +1,12 @@
+package com.attvin.io;
+
+import lombok.Value;
+
+/**
+ * A row that could not be imported, with the 1-based row number in the source file.
+ */
+@Value
+public class RowError {
+    int rowNumber;
+    String reason;
+}
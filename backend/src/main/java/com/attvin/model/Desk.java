@@ -5,24 +5,28 @@ import java.time.LocalDateTime;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "desks")
 @DiscriminatorValue("DESK")
 public class Desk extends MaterialRecord {
     
-    @Column(name = "desk_type", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "desk_type")
     @Enumerated(EnumType.STRING)
     private DeskType deskType;
     
-    @Column(name = "height_adjustable", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "height_adjustable")
     private Boolean heightAdjustable;
     
-    @Column(name = "maximum_height", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "maximum_height")
     private Double maximumHeight;
     
-    @Column(name = "width", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "width")
     private Double width;
     
-    @Column(name = "depth", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "depth")
     private Double depth;
     
     // Enum
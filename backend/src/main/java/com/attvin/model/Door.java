@@ -5,17 +5,19 @@ import java.time.LocalDateTime;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "doors")
 @DiscriminatorValue("DOOR")
 public class Door extends MaterialRecord {
     
-    @Column(name = "height", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "height")
     private Double height;
     
-    @Column(name = "width", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "width")
     private Double width;
     
-    @Column(name = "swing_direction", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "swing_direction")
     @Enumerated(EnumType.STRING)
     private SwingDirection swingDirection;
     
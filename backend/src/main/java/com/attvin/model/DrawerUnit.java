@@ -5,20 +5,23 @@ import java.time.LocalDateTime;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "drawer_units")
 @DiscriminatorValue("DRAWER_UNIT")
 public class DrawerUnit extends MaterialRecord {
     
-    @Column(name = "height", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "height")
     private Double height;
     
-    @Column(name = "width", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "width")
     private Double width;
     
-    @Column(name = "depth", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "depth")
     private Double depth;
     
-    @Column(name = "has_wheels", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "has_wheels")
     private Boolean hasWheels;
     
     // Getters and setters
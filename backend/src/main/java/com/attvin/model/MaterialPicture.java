@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "material_pictures")
+@Table(name = "material_pictures", indexes = {
+    @Index(name = "idx_material_pictures_storage_key", columnList = "storage_key")
+})
 public class MaterialPicture {
     
     @Id
@@ -15,9 +17,9 @@ public class MaterialPicture {
     @JoinColumn(name = "material_id", nullable = false)
     private MaterialRecord material;
     
-    @Lob
-    @Column(name = "picture_data", nullable = false)
-    private byte[] pictureData;
+    // SHA-256 key of the image bytes in the PictureStorage; the bytes are not stored in the database
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey;
     
     @Column(name = "upload_date", nullable = false)
     private LocalDateTime uploadDate;
@@ -54,12 +56,12 @@ public class MaterialPicture {
         this.material = material;
     }
     
-    public byte[] getPictureData() {
-        return pictureData;
+    public String getStorageKey() {
+        return storageKey;
     }
     
-    public void setPictureData(byte[] pictureData) {
-        this.pictureData = pictureData;
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
     }
     
     public LocalDateTime getUploadDate() {
@@ -116,11 +118,11 @@ public class MaterialPicture {
     }
 
     // All-args constructor
-    public MaterialPicture(MaterialRecord material, byte[] pictureData, 
+    public MaterialPicture(MaterialRecord material, String storageKey, 
                          LocalDateTime uploadDate, Boolean isPrimary, String fileName, 
                          Long fileSize, String contentType, String description) {
         this.material = material;
-        this.pictureData = pictureData;
+        this.storageKey = storageKey;
         this.uploadDate = uploadDate;
         this.isPrimary = isPrimary;
         this.fileName = fileName;
@@ -6,12 +6,28 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "material_records")
-@Inheritance(strategy = InheritanceType.JOINED)
+@Table(name = "material_records",
+        indexes = {
+            @Index(name = "idx_material_records_last_modified", columnList = "last_modified"),
+            // Keyset pagination of the cursor listing
+            @Index(name = "idx_material_records_date_added_id", columnList = "date_added, id"),
+            @Index(name = "idx_material_records_name_id", columnList = "name, id")
+        })
+// One table for the whole hierarchy: polymorphic queries read material_records
+// alone instead of outer-joining a table per material type. Subclass columns
+// are nullable in the table; required ones are marked @Basic(optional = false).
+@Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "material_type")
 public abstract class MaterialRecord {
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled table generator: IDs are reserved in blocks of 50, so inserts can be
+    // batched (IDENTITY forces one round-trip per row to learn the generated key)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "material_record_ids")
+    @TableGenerator(name = "material_record_ids", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "material_records", allocationSize = MaterialRecord.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -31,6 +47,16 @@ public abstract class MaterialRecord {
     @Column(nullable = false)
     private String color;
 
+    // Set on every insert and update; incremental exports filter on it
+    @Column(name = "last_modified")
+    private LocalDateTime lastModified;
+
+    // Incremented on every update of the material or its pictures; the
+    // detail endpoint uses it as ETag
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "material", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<MaterialPicture> pictures = new ArrayList<>();
 
@@ -110,6 +136,20 @@ public abstract class MaterialRecord {
         this.color = color;
     }
 
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void updateLastModified() {
+        lastModified = LocalDateTime.now();
+    }
+
     public List<MaterialPicture> getPictures() {
         return pictures;
     }
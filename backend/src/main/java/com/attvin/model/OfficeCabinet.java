@@ -5,20 +5,23 @@ import java.time.LocalDateTime;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "office_cabinets")
 @DiscriminatorValue("OFFICE_CABINET")
 public class OfficeCabinet extends MaterialRecord {
     
-    @Column(name = "height", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "height")
     private Double height;
     
-    @Column(name = "width", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "width")
     private Double width;
     
-    @Column(name = "depth", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "depth")
     private Double depth;
     
-    @Column(name = "opening_type", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "cabinet_opening_type")
     @Enumerated(EnumType.STRING)
     private OpeningType openingType;
     
@@ -5,17 +5,19 @@ import java.time.LocalDateTime;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "windows")
 @DiscriminatorValue("WINDOW")
 public class Window extends MaterialRecord {
     
-    @Column(name = "height", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "height")
     private Double height;
     
-    @Column(name = "width", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "width")
     private Double width;
     
-    @Column(name = "opening_type", nullable = false)
+    @Basic(optional = false)
+    @Column(name = "window_opening_type")
     @Enumerated(EnumType.STRING)
     private OpeningType openingType;
 
@@ -0,0 +1,18 @@
+package com.attvin.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the MaterialPicture columns needed for listings.
+ * It never includes the picture bytes.
+ */
+public interface MaterialPictureMetadata {
+    Long getId();
+    Long getMaterialId();
+    String getFileName();
+    String getContentType();
+    Long getFileSize();
+    LocalDateTime getUploadDate();
+    Boolean getIsPrimary();
+    String getDescription();
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,8 +16,17 @@ public interface MaterialPictureRepository extends JpaRepository<MaterialPicture
     
     List<MaterialPicture> findByMaterialId(Long materialId);
     
+    // Loads the picture metadata of a whole page of materials in one query
+    @Query("SELECT p.id AS id, p.material.id AS materialId, p.fileName AS fileName, " +
+           "p.contentType AS contentType, p.fileSize AS fileSize, p.uploadDate AS uploadDate, " +
+           "p.isPrimary AS isPrimary, p.description AS description " +
+           "FROM MaterialPicture p WHERE p.material.id IN :materialIds ORDER BY p.id")
+    List<MaterialPictureMetadata> findMetadataByMaterialIdIn(@Param("materialIds") Collection<Long> materialIds);
+    
     Optional<MaterialPicture> findByMaterialIdAndIsPrimaryTrue(Long materialId);
     
+    boolean existsByStorageKey(String storageKey);
+    
     @Modifying
     @Query("UPDATE MaterialPicture p SET p.isPrimary = false WHERE p.material.id = :materialId")
     void clearPrimaryFlagForMaterial(@Param("materialId") Long materialId);
@@ -1,27 +1,149 @@
 package com.attvin.repository;
 
 import com.attvin.model.MaterialRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface MaterialRepository extends JpaRepository<MaterialRecord, Long> {
     
+    @Query("SELECT m FROM MaterialRecord m WHERE " +
+           "(:category IS NULL OR m.category = :category) AND " +
+           "(:type IS NULL OR TYPE(m) = :type) AND " +
+           "(:condition IS NULL OR m.materialCondition = :condition)")
+    Page<MaterialRecord> searchMaterials(
+            @Param("category") String category,
+            @Param("type") String type,
+            @Param("condition") String condition,
+            Pageable pageable);
+
+    // Answers text queries until the MaterialSearchIndex has been built
     @Query("SELECT m FROM MaterialRecord m WHERE " +
            "(:category IS NULL OR m.category = :category) AND " +
            "(:type IS NULL OR TYPE(m) = :type) AND " +
            "(:condition IS NULL OR m.materialCondition = :condition) AND " +
-           "(:query IS NULL OR " +
-           "LOWER(m.name) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
+           "(LOWER(m.name) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "LOWER(m.notes) LIKE LOWER(CONCAT('%', :query, '%')))")
-    Page<MaterialRecord> searchMaterials(
+    Page<MaterialRecord> searchMaterialsByText(
             @Param("category") String category,
             @Param("type") String type,
             @Param("condition") String condition,
             @Param("query") String query,
             Pageable pageable);
-}
\ No newline at end of file
+
+    // Text queries are answered by the MaterialSearchIndex; this loads its fields.
+    // Each row is [id, name, notes, color, category, type, condition, dateAdded].
+    @Query("SELECT m.id, m.name, m.notes, m.color, m.category, TYPE(m), m.materialCondition, m.dateAdded " +
+           "FROM MaterialRecord m")
+    List<Object[]> findSearchFields();
+
+    // Answers conditional GETs of the detail endpoint without loading the material
+    @Query("SELECT m.version FROM MaterialRecord m WHERE m.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Aggregate queries for the stats dashboard. Each row is [key, count];
+    // none of them hydrate MaterialRecord entities.
+
+    @Query("SELECT m.materialCondition, COUNT(m) FROM MaterialRecord m GROUP BY m.materialCondition")
+    List<Object[]> countByCondition();
+
+    @Query("SELECT m.category, COUNT(m) FROM MaterialRecord m GROUP BY m.category")
+    List<Object[]> countByCategory();
+
+    // TYPE(m) resolves to the entity class through the discriminator column
+    @Query("SELECT TYPE(m), COUNT(m) FROM MaterialRecord m GROUP BY TYPE(m)")
+    List<Object[]> countByType();
+
+    @Query("SELECT COUNT(m) FROM MaterialRecord m WHERE m.dateAdded > :since")
+    long countByDateAddedAfter(@Param("since") LocalDateTime since);
+
+    // Rows are [year, month, day, hour, count], one per hour with additions
+    @Query("SELECT YEAR(m.dateAdded), MONTH(m.dateAdded), DAY(m.dateAdded), HOUR(m.dateAdded), COUNT(m) "
+            + "FROM MaterialRecord m WHERE m.dateAdded > :since "
+            + "GROUP BY YEAR(m.dateAdded), MONTH(m.dateAdded), DAY(m.dateAdded), HOUR(m.dateAdded)")
+    List<Object[]> countByHourAddedAfter(@Param("since") LocalDateTime since);
+
+    // Streams every material in ID order for exports. Rows are read from the
+    // cursor in fetch-size batches; the stream must be consumed and closed
+    // inside a transaction.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT m FROM MaterialRecord m ORDER BY m.id")
+    Stream<MaterialRecord> streamAllOrderById();
+
+    // Streams the materials matching the export filters in ID order. Every
+    // filter is optional; modifiedSince uses the last_modified index.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT m FROM MaterialRecord m WHERE " +
+           "(:category IS NULL OR m.category = :category) AND " +
+           "(:type IS NULL OR TYPE(m) = :type) AND " +
+           "(:condition IS NULL OR m.materialCondition = :condition) AND " +
+           "(:modifiedSince IS NULL OR m.lastModified >= :modifiedSince) " +
+           "ORDER BY m.id")
+    Stream<MaterialRecord> streamForExport(
+            @Param("category") String category,
+            @Param("type") Class<? extends MaterialRecord> type,
+            @Param("condition") String condition,
+            @Param("modifiedSince") LocalDateTime modifiedSince);
+
+    @Query("SELECT m FROM MaterialRecord m WHERE m.id IN :ids AND " +
+           "(:modifiedSince IS NULL OR m.lastModified >= :modifiedSince) " +
+           "ORDER BY m.id")
+    List<MaterialRecord> findForExport(
+            @Param("ids") Collection<Long> ids,
+            @Param("modifiedSince") LocalDateTime modifiedSince);
+
+    // Keyset pages of the cursor listing, in the order of MaterialSort.NEWEST
+    // and NAME. The first page passes a null afterId; later pages continue
+    // strictly after the last row of the previous page, so no OFFSET is needed.
+    @Query("SELECT m FROM MaterialRecord m WHERE " +
+           "(:category IS NULL OR m.category = :category) AND " +
+           "(:type IS NULL OR TYPE(m) = :type) AND " +
+           "(:condition IS NULL OR m.materialCondition = :condition) AND " +
+           "(:afterId IS NULL OR m.dateAdded < :afterDateAdded OR " +
+           "(m.dateAdded = :afterDateAdded AND m.id < :afterId)) " +
+           "ORDER BY m.dateAdded DESC, m.id DESC")
+    List<MaterialRecord> findNewestAfter(
+            @Param("category") String category,
+            @Param("type") Class<? extends MaterialRecord> type,
+            @Param("condition") String condition,
+            @Param("afterDateAdded") LocalDateTime afterDateAdded,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    @Query("SELECT m FROM MaterialRecord m WHERE " +
+           "(:category IS NULL OR m.category = :category) AND " +
+           "(:type IS NULL OR TYPE(m) = :type) AND " +
+           "(:condition IS NULL OR m.materialCondition = :condition) AND " +
+           "(:afterId IS NULL OR m.name > :afterName OR " +
+           "(m.name = :afterName AND m.id > :afterId)) " +
+           "ORDER BY m.name, m.id")
+    List<MaterialRecord> findByNameAfter(
+            @Param("category") String category,
+            @Param("type") Class<? extends MaterialRecord> type,
+            @Param("condition") String condition,
+            @Param("afterName") String afterName,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    @Query("SELECT COUNT(m) FROM MaterialRecord m WHERE " +
+           "(:category IS NULL OR m.category = :category) AND " +
+           "(:type IS NULL OR TYPE(m) = :type) AND " +
+           "(:condition IS NULL OR m.materialCondition = :condition)")
+    long countMatching(
+            @Param("category") String category,
+            @Param("type") Class<? extends MaterialRecord> type,
+            @Param("condition") String condition);
+}
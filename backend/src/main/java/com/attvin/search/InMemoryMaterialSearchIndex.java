@@ -0,0 +1,209 @@
+package com.attvin.search;
+
+import com.attvin.event.MaterialChangedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index held in process memory. Terms are kept in a sorted map so a
+ * prefix lookup is a range scan over the terms starting with the query token.
+ *
+ * Each posting carries a weight that reflects which field the term came from;
+ * a document's score is the sum of the weights of its matching terms, with
+ * exact term matches boosted over prefix matches.
+ */
+@Component
+@ConditionalOnProperty(name = "material.search.index", havingValue = "memory", matchIfMissing = true)
+public class InMemoryMaterialSearchIndex implements MaterialSearchIndex {
+
+    private static final float NAME_WEIGHT = 4.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float COLOR_WEIGHT = 2.0f;
+    private static final float NOTES_WEIGHT = 1.0f;
+    private static final float EXACT_MATCH_BOOST = 2.0f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, IndexedMaterial> documents = new HashMap<>();
+
+    @Override
+    public SearchResult search(String query, String category, String type, String condition, long offset, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return new SearchResult(Collections.emptyList(), 0);
+        }
+
+        Map<Long, Float> scores;
+        lock.readLock().lock();
+        try {
+            scores = matchAll(tokens);
+            scores.keySet().removeIf(id -> !documents.get(id).matches(category, type, condition));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Float>> ranked = new ArrayList<>(scores.entrySet());
+        // Highest score first; newer materials (higher IDs) win ties
+        ranked.sort(Map.Entry.<Long, Float>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())));
+
+        List<Long> page = new ArrayList<>();
+        for (long i = offset; i < ranked.size() && page.size() < limit; i++) {
+            page.add(ranked.get((int) i).getKey());
+        }
+        return new SearchResult(page, ranked.size());
+    }
+
+    @Override
+    public void index(MaterialChangedEvent.Snapshot material) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(material.getMaterialId());
+            addDocument(material);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long materialId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(materialId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rebuild(Collection<MaterialChangedEvent.Snapshot> materials) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            for (MaterialChangedEvent.Snapshot material : materials) {
+                addDocument(material);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the scores of the documents that match every token, either
+     * exactly or by prefix. Must be called with the read lock held.
+     */
+    private Map<Long, Float> matchAll(List<String> tokens) {
+        Map<Long, Float> scores = null;
+        for (String token : tokens) {
+            Map<Long, Float> tokenScores = new HashMap<>();
+            NavigableMap<String, Map<Long, Float>> matches =
+                    postings.subMap(token, true, token + Character.MAX_VALUE, true);
+            for (Map.Entry<String, Map<Long, Float>> term : matches.entrySet()) {
+                float boost = term.getKey().equals(token) ? EXACT_MATCH_BOOST : 1.0f;
+                term.getValue().forEach((id, weight) -> tokenScores.merge(id, weight * boost, Float::sum));
+            }
+
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                scores.replaceAll((id, score) -> score + tokenScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private void addDocument(MaterialChangedEvent.Snapshot material) {
+        Map<String, Float> weights = new HashMap<>();
+        addTerms(weights, material.getName(), NAME_WEIGHT);
+        addTerms(weights, material.getCategory(), CATEGORY_WEIGHT);
+        addTerms(weights, material.getColor(), COLOR_WEIGHT);
+        addTerms(weights, material.getNotes(), NOTES_WEIGHT);
+
+        Long id = material.getMaterialId();
+        weights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(id, weight));
+        documents.put(id, new IndexedMaterial(material.getCategory(), material.getMaterialType(),
+                material.getMaterialCondition(), weights.keySet()));
+    }
+
+    private void removeDocument(Long materialId) {
+        IndexedMaterial existing = documents.remove(materialId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(materialId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Float> weights, String text, float weight) {
+        for (String term : tokenize(text)) {
+            weights.merge(term, weight, Float::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Normalizes a material type so "DrawerUnit", "DRAWER_UNIT" and "drawerunit" compare equal.
+     */
+    private static String normalizeType(String type) {
+        return type == null ? null : type.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class IndexedMaterial {
+        private final String category;
+        private final String type;
+        private final String condition;
+        private final Set<String> terms;
+
+        IndexedMaterial(String category, String type, String condition, Set<String> terms) {
+            this.category = category;
+            this.type = normalizeType(type);
+            this.condition = condition;
+            this.terms = new HashSet<>(terms);
+        }
+
+        boolean matches(String category, String type, String condition) {
+            return (category == null || category.equals(this.category))
+                    && (type == null || normalizeType(type).equals(this.type))
+                    && (condition == null || condition.equals(this.condition));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.attvin.search;
+
+import com.attvin.event.MaterialChangedEvent;
+
+import java.util.Collection;
+
+/**
+ * Text index over material name, notes, color and category.
+ *
+ * Implementations return ranked material IDs only; callers load the
+ * matching page of entities themselves.
+ */
+public interface MaterialSearchIndex {
+
+    /**
+     * Finds materials whose indexed text contains every term of the query,
+     * either exactly or as a prefix. Results are ordered by relevance.
+     * The category, type and condition filters are optional.
+     */
+    SearchResult search(String query, String category, String type, String condition, long offset, int limit);
+
+    /**
+     * Adds a material to the index, replacing any previous entry for it.
+     */
+    void index(MaterialChangedEvent.Snapshot material);
+
+    void remove(Long materialId);
+
+    /**
+     * Replaces the whole index content with the given materials.
+     */
+    void rebuild(Collection<MaterialChangedEvent.Snapshot> materials);
+}
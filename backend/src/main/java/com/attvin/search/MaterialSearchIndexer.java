@@ -0,0 +1,105 @@
+package com.attvin.search;
+
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.repository.MaterialRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the {@link MaterialSearchIndex} in sync with the database: the index
+ * is built once the application is ready and updated after every committed
+ * material change.
+ *
+ * Requests and cluster events are already served while the index is built,
+ * and a change committed during the load may or may not be part of what it
+ * read. Changes that arrive during a rebuild are therefore held back and
+ * applied after the loaded materials have replaced the index content.
+ */
+@Component
+@RequiredArgsConstructor
+public class MaterialSearchIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterialSearchIndexer.class);
+
+    private final MaterialRepository materialRepository;
+    private final MaterialSearchIndex searchIndex;
+
+    // Changes received while a rebuild is loading; null when no rebuild runs. Guarded by this
+    private List<MaterialChangedEvent> heldBack;
+    private volatile boolean built;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        synchronized (this) {
+            heldBack = new ArrayList<>();
+        }
+        List<MaterialChangedEvent.Snapshot> materials = materialRepository.findSearchFields().stream()
+                .map(MaterialSearchIndexer::toSnapshot)
+                .collect(Collectors.toList());
+        int replayed;
+        synchronized (this) {
+            searchIndex.rebuild(materials);
+            // Applying a change the load already read again is harmless
+            heldBack.forEach(this::apply);
+            replayed = heldBack.size();
+            heldBack = null;
+            built = true;
+        }
+        logger.info("Built material search index with {} materials, then applied {} changes made meanwhile",
+                materials.size(), replayed);
+    }
+
+    /**
+     * Returns whether the index has been built, so it answers for every material.
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    // Indexed before MaterialChangeSequence moves the token that tags search results
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMaterialChanged(MaterialChangedEvent event) {
+        if (heldBack != null) {
+            heldBack.add(event);
+        } else {
+            apply(event);
+        }
+    }
+
+    private void apply(MaterialChangedEvent event) {
+        if (event.getAfter() != null) {
+            searchIndex.index(event.getAfter());
+        } else {
+            searchIndex.remove(event.getMaterialId());
+        }
+    }
+
+    /**
+     * Maps a row of {@link MaterialRepository#findSearchFields()} to a snapshot.
+     */
+    private static MaterialChangedEvent.Snapshot toSnapshot(Object[] row) {
+        return new MaterialChangedEvent.Snapshot(
+                (Long) row[0],
+                (String) row[1],
+                (String) row[2],
+                (String) row[3],
+                (String) row[4],
+                ((Class<?>) row[5]).getSimpleName(),
+                (String) row[6],
+                (LocalDateTime) row[7]);
+    }
+}
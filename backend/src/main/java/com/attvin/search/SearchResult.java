@@ -0,0 +1,14 @@
+package com.attvin.search;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of search hits, ordered by relevance, plus the total number of hits.
+ */
+@Value
+public class SearchResult {
+    List<Long> materialIds;
+    long totalHits;
+}
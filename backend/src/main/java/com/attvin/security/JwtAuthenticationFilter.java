@@ -1,54 +1,93 @@
 package com.attvin.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Authenticates requests that carry a bearer token.
+ *
+ * A token is verified once, with a single parse, and the user it belongs to
+ * is then cached by token for a short TTL, so the following requests with
+ * the same token need neither a signature check nor a user lookup. Role
+ * changes and removed users take effect when the entry expires. The time
+ * spent authenticating is published as the "security.jwt.authentication"
+ * timer, tagged with whether the token was cached, verified or rejected.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    static final String CACHE_NAME = "jwt.principals";
+
     @Autowired
     private JwtUtil jwtUtil;
 
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.principal-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${jwt.principal-cache.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    private Cache<String, CachedPrincipal> principals;
+    private Timer cachedTimer;
+    private Timer verifiedTimer;
+    private Timer rejectedTimer;
+
+    @PostConstruct
+    public void init() {
+        principals = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, CACHE_NAME);
+        cachedTimer = authenticationTimer("cached");
+        verifiedTimer = authenticationTimer("verified");
+        rejectedTimer = authenticationTimer("rejected");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        
-        final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
-
-        // Check if Authorization header exists and starts with 'Bearer '
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
-                logger.error("Invalid JWT token", e);
-            }
-        }
+        final String authorizationHeader = request.getHeader("Authorization");
 
-        // If we found a username and no authentication exists in the context
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        // Check if Authorization header exists and starts with 'Bearer ', and no authentication exists in the context
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = authenticate(authorizationHeader.substring(7));
 
-            // Validate the token against the UserDetails
-            if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
+            if (userDetails != null) {
                 // Create authentication token and set it in the security context
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
@@ -56,7 +95,49 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
-        
+
         filterChain.doFilter(request, response);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Helper method to resolve the user of a token, or null if the token is
+     * invalid, expired or belongs to no user
+     */
+    private UserDetails authenticate(String jwt) {
+        long start = System.nanoTime();
+        CachedPrincipal cached = principals.getIfPresent(jwt);
+        if (cached != null && cached.getExpiresAt().isAfter(Instant.now())) {
+            cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached.getUserDetails();
+        }
+
+        try {
+            // Verifies signature and expiration in one parse
+            Claims claims = jwtUtil.parseClaims(jwt);
+            UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+            if (claims.getExpiration() != null) {
+                principals.put(jwt, new CachedPrincipal(userDetails, claims.getExpiration().toInstant()));
+            }
+            // else: without an expiration there is no time until which the result may be reused
+            verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return userDetails;
+        } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+            logger.error("Invalid JWT token", e);
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return null;
+        }
+    }
+
+    private Timer authenticationTimer(String result) {
+        return Timer.builder("security.jwt.authentication")
+                .description("Time spent authenticating bearer tokens")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @lombok.Value
+    private static class CachedPrincipal {
+        UserDetails userDetails;
+        Instant expiresAt;
+    }
+}
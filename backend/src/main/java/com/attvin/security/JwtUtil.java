@@ -2,6 +2,7 @@ package com.attvin.security;
 
 import com.attvin.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -30,9 +31,15 @@ public class JwtUtil {
     
     private Key signingKey;
 
+    private JwtParser parser;
+
     @PostConstruct
     public void init() {
         this.signingKey = getSigningKey();
+        // Parsers are immutable and thread-safe, so one is shared by all requests
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String generateToken(User user) {
@@ -49,8 +56,17 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token, String userEmail) {
-        final String username = extractUsername(token);
-        return (username.equals(userEmail) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(userEmail) && !claims.getExpiration().before(new Date()));
+    }
+
+    /**
+     * Verifies the token's signature and expiration and returns its claims,
+     * so a caller needs to parse the token only once. Throws a JwtException
+     * if the token is invalid or expired.
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String extractUsername(String token) {
@@ -76,21 +92,8 @@ public class JwtUtil {
                 .collect(Collectors.toList());
     }
 
-    private Date extractExpiration(String token) {
-        return extractAllClaims(token).getExpiration();
-    }
-
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = extractExpiration(token);
-        return expiration.before(new Date());
+        return parseClaims(token);
     }
 
     private Key getSigningKey() {
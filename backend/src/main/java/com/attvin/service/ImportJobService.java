@@ -0,0 +1,13 @@
+package com.attvin.service;
+
+import com.attvin.dto.ImportJobDTO;
+import com.attvin.io.ImportMode;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ImportJobService {
+    ImportJobDTO startExcelImport(MultipartFile excelFile, ImportMode mode);
+    ImportJobDTO getJob(String jobId);
+    ImportJobDTO cancelJob(String jobId);
+    Resource getErrorReport(String jobId);
+}
@@ -1,33 +1,66 @@
 package com.attvin.service;
 
+import com.attvin.dto.ImportSummaryDTO;
+import com.attvin.dto.MaterialExportFilter;
+import com.attvin.dto.MaterialPictureDTO;
 import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.dto.MaterialSliceDTO;
+import com.attvin.dto.MaterialSort;
 import com.attvin.dto.MaterialStatsDTO;
+import com.attvin.io.ExcelTemplate;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialTextFormat;
+import com.attvin.storage.PictureResource;
+import com.attvin.storage.StoredPicture;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface MaterialService {
     // CRUD operations
     MaterialRecordDTO createMaterial(MaterialRecordDTO materialDTO, List<MultipartFile> pictures);
     MaterialRecordDTO getMaterialById(Long id);
+    Long getMaterialVersion(Long id);
     MaterialRecordDTO updateMaterial(Long id, MaterialRecordDTO materialDTO);
     void deleteMaterial(Long id);
     
     // Search and filter operations
     Page<MaterialRecordDTO> searchMaterials(String category, String type, String condition, String query, Pageable pageable);
+    MaterialSliceDTO listMaterials(String category, String type, String condition, MaterialSort sort,
+                                   String cursor, int size, boolean includeTotal);
     
     // Statistics
     MaterialStatsDTO getMaterialStats();
+
+    /**
+     * Returns a token that changes whenever any material or its pictures
+     * change, for validating cached lists and statistics. Tokens are only
+     * comparable within one running instance.
+     */
+    String getChangeToken();
     
-    // Import/Export operations
-    void importMaterialsFromExcel(MultipartFile excelFile);
-    byte[] exportMaterialsToExcel();
-    byte[] generateExcelTemplate();
+    // Import/Export operations. Synchronous imports run in one transaction: invalid
+    // rows are skipped and counted as failed, and if saving fails nothing is imported
+    ImportSummaryDTO importMaterialsFromExcel(MultipartFile excelFile, ImportMode mode);
+    ImportSummaryDTO importMaterials(InputStream content, MaterialTextFormat format, ImportMode mode);
+    void exportMaterialsToExcel(OutputStream outputStream, MaterialExportFilter filter);
+    void exportMaterials(OutputStream outputStream, MaterialTextFormat format, MaterialExportFilter filter);
+
+    /**
+     * Throws IllegalArgumentException for a filter the exports would reject,
+     * so it can be checked before a streamed response is committed.
+     */
+    void validateExportFilter(MaterialExportFilter filter);
+    ExcelTemplate getExcelTemplate();
 
     // Picture management
     void addPicturesToMaterial(Long materialId, List<MultipartFile> pictures);
+    MaterialPictureDTO attachPicture(Long materialId, StoredPicture content, String fileName, String contentType, String description);
     void removePictureFromMaterial(Long materialId, Long pictureId);
     void setPrimaryPicture(Long materialId, Long pictureId);
     byte[] getPictureData(Long pictureId);
+    PictureResource getPicture(Long pictureId, Integer size);
 } 
\ No newline at end of file
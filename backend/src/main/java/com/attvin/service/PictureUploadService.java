@@ -0,0 +1,14 @@
+package com.attvin.service;
+
+import com.attvin.dto.MaterialPictureDTO;
+import com.attvin.dto.PictureUploadDTO;
+
+import java.io.InputStream;
+
+public interface PictureUploadService {
+    PictureUploadDTO startUpload(Long materialId, PictureUploadDTO upload);
+    PictureUploadDTO getUpload(Long materialId, String uploadId);
+    PictureUploadDTO writeChunk(Long materialId, String uploadId, int index, String sha256, InputStream content);
+    MaterialPictureDTO completeUpload(Long materialId, String uploadId);
+    void cancelUpload(Long materialId, String uploadId);
+}
@@ -0,0 +1,121 @@
+package com.attvin.service.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hash index of the stored materials, built once per upsert import by
+ * {@link MaterialImportKeys#buildIndex()}. Rows created by the import are
+ * added as they are written, so a sheet that repeats a row does not create
+ * it twice, and a row that changes the natural key of a material moves it
+ * to its new key. Only used from the import's writer thread.
+ */
+final class ImportIndex {
+
+    static final class Entry {
+        private Long id; // null until the material is written
+        private final String type;
+        private String key;
+        private String storedKey; // the key as last written, to go back to if a write fails
+        private String fingerprint;
+
+        private Entry(Long id, String type, String key, String fingerprint) {
+            this.id = id;
+            this.type = type;
+            this.key = key;
+            this.storedKey = key;
+            this.fingerprint = fingerprint;
+        }
+
+        Long getId() {
+            return id;
+        }
+
+        String getType() {
+            return type;
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        boolean isPending() {
+            return id == null;
+        }
+    }
+
+    private final Map<String, Entry> byKey = new HashMap<>();
+    private final Map<Long, Entry> byId = new HashMap<>();
+
+    /**
+     * Adds a stored material. If several share a natural key, rows are matched
+     * to the one with the lowest ID.
+     */
+    void addStored(Long id, String type, String key, String fingerprint) {
+        Entry entry = new Entry(id, type, key, fingerprint);
+        byKey.putIfAbsent(key, entry);
+        byId.put(id, entry);
+    }
+
+    Entry find(Long id, String key) {
+        return id != null ? byId.get(id) : byKey.get(key);
+    }
+
+    /**
+     * Registers a row that is about to be created, so later rows with the same key match it.
+     */
+    Entry addPending(String type, String key, String fingerprint) {
+        Entry entry = new Entry(null, type, key, fingerprint);
+        byKey.put(key, entry);
+        return entry;
+    }
+
+    void created(Entry entry, Long id) {
+        entry.id = id;
+        byId.put(id, entry);
+    }
+
+    /**
+     * Records the values of a row that is about to update the material, moving
+     * it to its new key if the row changes it.
+     */
+    void updated(Entry entry, String key, String fingerprint) {
+        rekey(entry, key);
+        entry.fingerprint = fingerprint;
+    }
+
+    void saved(Entry entry) {
+        entry.storedKey = entry.key;
+    }
+
+    /**
+     * Drops a material that was deleted while the import ran.
+     */
+    void removed(Entry entry) {
+        byKey.remove(entry.key, entry);
+        byId.remove(entry.id, entry);
+    }
+
+    /**
+     * Undoes what the index recorded for a write that was rolled back.
+     */
+    void writeFailed(Entry entry) {
+        if (entry.isPending()) {
+            byKey.remove(entry.key, entry);
+        } else {
+            // The stored values are unknown now, so the next matching row updates them
+            rekey(entry, entry.storedKey);
+            entry.fingerprint = null;
+        }
+    }
+
+    private void rekey(Entry entry, String key) {
+        if (entry.key.equals(key)) {
+            return;
+        }
+        byKey.remove(entry.key, entry);
+        // Another material may already have the new key; rows keep matching that one
+        byKey.putIfAbsent(key, entry);
+        entry.key = key;
+    }
+}
@@ -0,0 +1,295 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.ImportJobDTO;
+import com.attvin.io.ImportCancelledException;
+import com.attvin.io.ImportListener;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialSheetReader;
+import com.attvin.io.RowError;
+import com.attvin.service.ImportJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs Excel imports in the background.
+ *
+ * The upload is copied to a temp file before the request returns, then
+ * imported by the {@link MaterialImportPipeline} on the import executor. Rows
+ * are committed in chunks, each in its own transaction, so progress is visible
+ * while the job runs and a cancellation or failure keeps the chunks that were
+ * already committed.
+ * Rows that cannot be imported are written to a per-job CSV error report.
+ */
+@Service
+public class ImportJobServiceImpl implements ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobServiceImpl.class);
+
+    enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final MaterialImportPipeline importPipeline;
+    private final Executor executor;
+    private final Duration retention;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobServiceImpl(MaterialImportPipeline importPipeline,
+                                @Qualifier("importExecutor") Executor executor,
+                                @Value("${material.import.retention-hours:24}") long retentionHours) {
+        this.importPipeline = importPipeline;
+        this.executor = executor;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    @Override
+    public ImportJobDTO startExcelImport(MultipartFile excelFile, ImportMode mode) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), excelFile.getOriginalFilename(), mode);
+        try {
+            // The upload is only readable during the request, so it is copied first
+            job.source = Files.createTempFile("import-" + job.jobId + "-", ".xlsx");
+            try (InputStream content = excelFile.getInputStream()) {
+                Files.copy(content, job.source, StandardCopyOption.REPLACE_EXISTING);
+            }
+            job.errorReport = Files.createTempFile("import-" + job.jobId + "-errors-", ".csv");
+        } catch (IOException e) {
+            job.deleteFiles();
+            throw new UncheckedIOException("Failed to store the uploaded file", e);
+        }
+
+        jobs.put(job.jobId, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            job.deleteFiles();
+            throw new IllegalStateException("Too many imports are queued, please try again later");
+        }
+        return job.toDTO();
+    }
+
+    @Override
+    public ImportJobDTO getJob(String jobId) {
+        return findJob(jobId).toDTO();
+    }
+
+    /**
+     * Asks the job to stop. A running job stops before its next chunk; rows
+     * from chunks that were already committed stay imported.
+     */
+    @Override
+    public ImportJobDTO cancelJob(String jobId) {
+        ImportJob job = findJob(jobId);
+        job.cancelRequested = true;
+        return job.toDTO();
+    }
+
+    @Override
+    public Resource getErrorReport(String jobId) {
+        ImportJob job = findJob(jobId);
+        if (job.status == Status.QUEUED || job.status == Status.RUNNING) {
+            throw new IllegalStateException("The error report is available once the import has finished");
+        }
+        return new FileSystemResource(job.errorReport);
+    }
+
+    /**
+     * Forgets finished jobs and deletes their files once the retention period has passed.
+     */
+    @Scheduled(fixedDelayString = "${material.import.cleanup-interval-ms:3600000}")
+    public void deleteExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt != null && job.finishedAt.isBefore(cutoff);
+            if (expired) {
+                job.deleteFiles();
+            }
+            return expired;
+        });
+    }
+
+    private void run(ImportJob job) {
+        if (job.cancelRequested) {
+            job.finish(Status.CANCELLED, null);
+            return;
+        }
+        job.startNanos = System.nanoTime();
+        job.startedAt = LocalDateTime.now();
+        job.status = Status.RUNNING;
+
+        try (BufferedWriter report = Files.newBufferedWriter(job.errorReport, StandardCharsets.UTF_8)) {
+            report.write("row,reason");
+            report.newLine();
+
+            importPipeline.run(rows -> MaterialSheetReader.read(job.source.toFile(), rows), job.mode, new JobProgress(job, report));
+            job.finish(Status.COMPLETED, null);
+        } catch (ImportCancelledException e) {
+            job.finish(Status.CANCELLED, null);
+        } catch (Exception e) {
+            logger.warn("Import job {} failed", job.jobId, e);
+            job.finish(Status.FAILED, e.getMessage());
+        } finally {
+            deleteQuietly(job.source);
+        }
+        logger.info("Import job {} {}: {} rows read, {} created, {} updated, {} unchanged, {} failed",
+                job.jobId, job.status, job.rowsRead.get(), job.rowsCreated.get(), job.rowsUpdated.get(),
+                job.rowsSkipped.get(), job.rowsFailed.get());
+    }
+
+    private ImportJob findJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new NoSuchElementException("Import job not found with id: " + jobId);
+        }
+        return job;
+    }
+
+    private static String csvQuote(String value) {
+        return "\"" + value.replace("\"", "\"\"").replaceAll("[\r\n]+", " ") + "\"";
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete temporary file {}", file, e);
+        }
+    }
+
+    /**
+     * Records the pipeline's progress on the job and writes failed rows to its error report.
+     */
+    private static final class JobProgress implements ImportListener {
+        private final ImportJob job;
+        private final BufferedWriter report;
+
+        JobProgress(ImportJob job, BufferedWriter report) {
+            this.job = job;
+            this.report = report;
+        }
+
+        @Override
+        public void rowRead() {
+            job.rowsRead.incrementAndGet();
+        }
+
+        @Override
+        public void rowsCreated(int count) {
+            job.rowsCreated.addAndGet(count);
+        }
+
+        @Override
+        public void rowsUpdated(int count) {
+            job.rowsUpdated.addAndGet(count);
+        }
+
+        @Override
+        public void rowSkipped() {
+            job.rowsSkipped.incrementAndGet();
+        }
+
+        @Override
+        public void rowFailed(RowError error) {
+            job.rowsFailed.incrementAndGet();
+            try {
+                report.write(error.getRowNumber() + "," + csvQuote(error.getReason()));
+                report.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write the error report", e);
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return job.cancelRequested;
+        }
+    }
+
+    private static final class ImportJob {
+        private final String jobId;
+        private final String fileName;
+        private final ImportMode mode;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsCreated = new AtomicLong();
+        private final AtomicLong rowsUpdated = new AtomicLong();
+        private final AtomicLong rowsSkipped = new AtomicLong();
+        private final AtomicLong rowsFailed = new AtomicLong();
+        private Path source;
+        private Path errorReport;
+        private volatile Status status = Status.QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile String errorMessage;
+
+        ImportJob(String jobId, String fileName, ImportMode mode) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+            this.mode = mode;
+        }
+
+        void finish(Status finalStatus, String message) {
+            endNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+            errorMessage = message;
+            status = finalStatus;
+        }
+
+        void deleteFiles() {
+            deleteQuietly(source);
+            deleteQuietly(errorReport);
+        }
+
+        ImportJobDTO toDTO() {
+            ImportJobDTO dto = new ImportJobDTO();
+            dto.setJobId(jobId);
+            dto.setFileName(fileName);
+            dto.setMode(mode.name());
+            dto.setStatus(status.name());
+            dto.setRowsRead(rowsRead.get());
+            dto.setRowsCreated(rowsCreated.get());
+            dto.setRowsUpdated(rowsUpdated.get());
+            dto.setRowsSkipped(rowsSkipped.get());
+            dto.setRowsFailed(rowsFailed.get());
+            dto.setSubmittedAt(submittedAt);
+            dto.setStartedAt(startedAt);
+            dto.setFinishedAt(finishedAt);
+            dto.setErrorMessage(errorMessage);
+            if (startedAt != null) {
+                long elapsedNanos = (finishedAt != null ? endNanos : System.nanoTime()) - startNanos;
+                dto.setRowsPerSecond(elapsedNanos > 0 ? rowsRead.get() * 1e9 / elapsedNanos : 0);
+            }
+            return dto;
+        }
+    }
+}
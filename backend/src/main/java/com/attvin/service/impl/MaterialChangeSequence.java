@@ -0,0 +1,47 @@
+package com.attvin.service.impl;
+
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.event.MaterialPicturesChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts material changes, so lists and statistics can be tagged with the
+ * state they were read in. The token starts with a random epoch, so tokens
+ * from an earlier run or another instance never match.
+ *
+ * The sequence moves both before a change commits and after the listeners
+ * that keep derived state (search index, stats counters) have applied it.
+ * A response read anywhere in between carries a token that is already out
+ * of date once the change is visible.
+ */
+@Component
+public class MaterialChangeSequence {
+
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public String currentToken() {
+        return epoch + "-" + sequence.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true,
+            classes = {MaterialChangedEvent.class, MaterialPicturesChangedEvent.class})
+    public void beforeCommit() {
+        sequence.incrementAndGet();
+    }
+
+    // Listeners without an @Order share this precedence, so the ones that keep derived state declare @Order(0)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true,
+            classes = {MaterialChangedEvent.class, MaterialPicturesChangedEvent.class})
+    public void afterCommit() {
+        sequence.incrementAndGet();
+    }
+}
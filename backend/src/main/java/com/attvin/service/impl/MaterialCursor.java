@@ -0,0 +1,68 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialSort;
+import com.attvin.model.MaterialRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the cursor-based listing: the sort key and ID of the last
+ * material on a page. Clients get it as an opaque URL-safe token.
+ */
+final class MaterialCursor {
+
+    private final MaterialSort sort;
+    private final Long id;
+    private final String key;
+
+    private MaterialCursor(MaterialSort sort, Long id, String key) {
+        this.sort = sort;
+        this.id = id;
+        this.key = key;
+    }
+
+    static MaterialCursor after(MaterialSort sort, MaterialRecord last) {
+        String key = sort == MaterialSort.NEWEST ? last.getDateAdded().toString() : last.getName();
+        return new MaterialCursor(sort, last.getId(), key);
+    }
+
+    /**
+     * Reads a token made by {@link #encode()} for the same sort order.
+     */
+    static MaterialCursor decode(String token, MaterialSort sort) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 3);
+            if (parts.length != 3 || !parts[0].equals(sort.name())) {
+                throw new IllegalArgumentException("The cursor does not belong to a " + sort + " listing");
+            }
+            MaterialCursor cursor = new MaterialCursor(sort, Long.valueOf(parts[1]), parts[2]);
+            if (sort == MaterialSort.NEWEST) {
+                cursor.dateAdded();
+            }
+            return cursor;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    String encode() {
+        String position = sort.name() + ":" + id + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    LocalDateTime dateAdded() {
+        return LocalDateTime.parse(key);
+    }
+
+    String name() {
+        return key;
+    }
+}
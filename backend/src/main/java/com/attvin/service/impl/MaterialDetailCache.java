@@ -0,0 +1,91 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialPictureDTO;
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.event.MaterialPicturesChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of mapped material details for getMaterialById.
+ *
+ * The cache is bounded by the estimated size of its entries and evicts with
+ * Caffeine's W-TinyLFU policy, so materials read often stay cached. Entries
+ * expire after a TTL as a safety net; normally they are invalidated after
+ * the commit of any write to the material or its pictures. Hit, miss and
+ * eviction counts are published as the "material.details" cache metrics.
+ *
+ * Cached DTOs are shared between readers and must not be modified.
+ */
+@Component
+public class MaterialDetailCache {
+
+    static final String CACHE_NAME = "material.details";
+
+    private final Cache<Long, MaterialRecordDTO> cache;
+
+    public MaterialDetailCache(@Value("${material.detail-cache.max-size-bytes:33554432}") long maxSizeBytes,
+                               @Value("${material.detail-cache.ttl-seconds:600}") long ttlSeconds,
+                               MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((Long id, MaterialRecordDTO material) -> estimateSize(material))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached details, or loads and caches them. Concurrent reads
+     * of a missing material share one load, and an invalidation that arrives
+     * during a load discards its result. Failed loads are not cached.
+     */
+    public MaterialRecordDTO get(Long materialId, Function<Long, MaterialRecordDTO> loader) {
+        return cache.get(materialId, loader);
+    }
+
+    // Evicted before MaterialChangeSequence moves the change token, for both event types
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMaterialChanged(MaterialChangedEvent event) {
+        cache.invalidate(event.getMaterialId());
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPicturesChanged(MaterialPicturesChangedEvent event) {
+        cache.invalidate(event.getMaterialId());
+    }
+
+    /**
+     * Helper method to estimate the heap size of a DTO: a fixed amount for
+     * the objects and boxed values, plus two bytes per character
+     */
+    static int estimateSize(MaterialRecordDTO material) {
+        int size = 320 + textSize(material.getName()) + textSize(material.getCategory())
+                + textSize(material.getMaterialType()) + textSize(material.getMaterialCondition())
+                + textSize(material.getColor()) + textSize(material.getNotes());
+        if (material.getPictures() != null) {
+            for (MaterialPictureDTO picture : material.getPictures()) {
+                size += 160 + textSize(picture.getFileName()) + textSize(picture.getContentType())
+                        + textSize(picture.getDescription());
+            }
+        }
+        return size;
+    }
+
+    private static int textSize(String text) {
+        return text == null ? 0 : 40 + 2 * text.length();
+    }
+}
@@ -0,0 +1,160 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.model.Desk;
+import com.attvin.model.Door;
+import com.attvin.model.DrawerUnit;
+import com.attvin.model.MaterialRecord;
+import com.attvin.model.OfficeCabinet;
+import com.attvin.model.Window;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Builds material entities from DTOs. It holds no state and does not touch
+ * the database, so it can be used from any thread, e.g. by the import's
+ * parse workers.
+ */
+@Component
+@RequiredArgsConstructor
+public class MaterialFactory {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Creates a new, unsaved material entity of the DTO's type
+     */
+    public MaterialRecord build(MaterialRecordDTO materialDTO) {
+        // Create the appropriate material type based on materialDTO.getMaterialType()
+        MaterialRecord material = createMaterialInstance(materialDTO.getMaterialType());
+        
+        // Set basic properties
+        material.setName(materialDTO.getName());
+        material.setCategory(materialDTO.getCategory());
+        material.setMaterialCondition(materialDTO.getMaterialCondition());
+        material.setColor(materialDTO.getColor());
+        material.setNotes(materialDTO.getNotes());
+        material.setDateAdded(LocalDateTime.now());
+        
+        // Set specific properties based on material type
+        setTypeSpecificProperties(material, materialDTO);
+        return material;
+    }
+    
+    /**
+     * Resolves a material type name such as "DRAWER_UNIT" or "DrawerUnit" to its entity class
+     */
+    public Class<? extends MaterialRecord> entityClass(String materialType) {
+        return createMaterialInstance(materialType).getClass();
+    }
+
+    // Helper method to create the appropriate material instance
+    private MaterialRecord createMaterialInstance(String materialType) {
+        // Handle the material type in a case-insensitive manner
+        switch (materialType.toUpperCase()) {
+            case "WINDOW":
+                return new Window();
+            case "DOOR":
+                return new Door();
+            case "DESK":
+                return new Desk();
+            case "DRAWER_UNIT":
+            case "DRAWERUNIT":
+                return new DrawerUnit();
+            case "OFFICE_CABINET":
+            case "OFFICECABINET":
+                return new OfficeCabinet();
+            default:
+                throw new UnsupportedOperationException("Unsupported material type: " + materialType);
+        }
+    }
+
+    // Helper method to set type-specific properties
+    private void setTypeSpecificProperties(MaterialRecord material, MaterialRecordDTO dto) {
+        String materialType = material.getClass().getSimpleName();
+        
+        switch (materialType) {
+            case "Window":
+                Window window = (Window) material;
+                window.setHeight(dto.getHeight());
+                window.setWidth(dto.getWidth());
+                if (dto.getOpeningType() != null) {
+                    window.setOpeningType(Window.OpeningType.valueOf(dto.getOpeningType()));
+                }
+                if (dto.getHingeSide() != null) {
+                    window.setHingeSide(Window.HingeSide.valueOf(dto.getHingeSide()));
+                }
+                window.setUValue(dto.getUValue());
+                break;
+                
+            case "Door":
+                Door door = (Door) material;
+                door.setHeight(dto.getHeight());
+                door.setWidth(dto.getWidth());
+                if (dto.getSwingDirection() != null) {
+                    door.setSwingDirection(Door.SwingDirection.valueOf(dto.getSwingDirection()));
+                }
+                door.setUValue(dto.getUValue());
+                break;
+                
+            case "Desk":
+                Desk desk = (Desk) material;
+                desk.setDeskType(Desk.DeskType.valueOf(dto.getDeskType()));
+                desk.setMaximumHeight(dto.getMaximumHeight());
+                desk.setWidth(dto.getWidth());
+                desk.setDepth(dto.getDepth());
+                if (dto.getHeightAdjustable() != null) {
+                    desk.setHeightAdjustable(dto.getHeightAdjustable());
+                }
+                break;
+                
+            case "DrawerUnit":
+                DrawerUnit drawerUnit = (DrawerUnit) material;
+                drawerUnit.setHeight(dto.getHeight());
+                drawerUnit.setWidth(dto.getWidth());
+                drawerUnit.setDepth(dto.getDepth());
+                if (dto.getHasWheels() != null) {
+                    drawerUnit.setHasWheels(dto.getHasWheels());
+                }
+                break;
+                
+            case "OfficeCabinet":
+                OfficeCabinet cabinet = (OfficeCabinet) material;
+                cabinet.setHeight(dto.getHeight());
+                cabinet.setWidth(dto.getWidth());
+                cabinet.setDepth(dto.getDepth());
+                if (dto.getOpeningType() != null) {
+                    cabinet.setOpeningType(OfficeCabinet.OpeningType.valueOf(dto.getOpeningType()));
+                }
+                break;
+                
+            default:
+                throw new UnsupportedOperationException("Unsupported material type: " + materialType);
+        }
+    }
+
+    /**
+     * Rejects a material with missing required values before it is persisted.
+     * Once queued for insert, an invalid row would fail its whole batch at flush.
+     */
+    public void checkRequiredValues(MaterialRecord material) {
+        EntityPersister persister = entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getMappingMetamodel()
+            .getEntityDescriptor(material.getClass());
+        Object[] values = persister.getValues(material);
+        boolean[] nullable = persister.getPropertyNullability();
+        for (int i = 0; i < values.length; i++) {
+            // The version is seeded by Hibernate on persist
+            boolean version = persister.isVersioned() && i == persister.getVersionProperty();
+            if (!nullable[i] && !version && values[i] == null) {
+                throw new IllegalArgumentException("Missing required value: " + persister.getPropertyNames()[i]);
+            }
+        }
+    }
+}
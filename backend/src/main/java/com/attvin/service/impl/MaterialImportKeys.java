@@ -0,0 +1,163 @@
+package com.attvin.service.impl;
+
+import com.attvin.model.MaterialRecord;
+import com.attvin.repository.MaterialRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Matching of imported rows against stored materials for upsert imports.
+ *
+ * The natural key is built from the properties listed in
+ * material.import.natural-key ("type" stands for the material type). String
+ * parts are compared trimmed and case-insensitively, so re-typed supplier
+ * sheets still match. The fingerprint covers every imported value and
+ * decides whether a matched material needs an update at all.
+ */
+@Component
+public class MaterialImportKeys {
+
+    static final String TYPE_KEY = "type";
+
+    // Set by the application rather than taken from the sheet
+    private static final Set<String> NOT_IMPORTED = Set.of("dateAdded", "lastModified");
+
+    private static final int INDEX_CLEAR_INTERVAL = 500;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityManager entityManager;
+    private final MaterialRepository materialRepository;
+    private final List<String> naturalKey;
+
+    private final Map<Class<?>, int[]> keyProperties = new ConcurrentHashMap<>();
+    private final Map<Class<?>, int[]> importedProperties = new ConcurrentHashMap<>();
+
+    public MaterialImportKeys(EntityManagerFactory entityManagerFactory,
+                              EntityManager entityManager,
+                              MaterialRepository materialRepository,
+                              @Value("${material.import.natural-key:name,category,type,width,height,depth}") List<String> naturalKey) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityManager = entityManager;
+        this.materialRepository = materialRepository;
+        this.naturalKey = naturalKey.stream().map(String::trim).filter(name -> !name.isEmpty()).toList();
+        if (this.naturalKey.isEmpty()) {
+            throw new IllegalArgumentException("material.import.natural-key must name at least one property");
+        }
+    }
+
+    /**
+     * Reads the key and fingerprint of every stored material into a new index.
+     * This is the only query an upsert import makes to match its rows.
+     */
+    @Transactional(readOnly = true)
+    public ImportIndex buildIndex() {
+        ImportIndex index = new ImportIndex();
+        try (Stream<MaterialRecord> materials = materialRepository.streamAllOrderById()) {
+            Iterator<MaterialRecord> iterator = materials.iterator();
+            int read = 0;
+            while (iterator.hasNext()) {
+                MaterialRecord material = iterator.next();
+                index.addStored(material.getId(), typeOf(material), naturalKey(material), fingerprint(material));
+                if (++read % INDEX_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        return index;
+    }
+
+    public String naturalKey(MaterialRecord material) {
+        EntityPersister persister = persister(material);
+        int[] properties = keyProperties.computeIfAbsent(material.getClass(), type -> resolveKeyProperties(persister));
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < properties.length; i++) {
+            Object value;
+            if (properties[i] == -2) {
+                value = typeOf(material);
+            } else if (properties[i] == -1) {
+                value = null; // Not a property of this material type
+            } else {
+                value = persister.getValue(material, properties[i]);
+            }
+            if (value instanceof String text) {
+                value = text.trim().toLowerCase(Locale.ROOT);
+            }
+            key.append(value).append('\u001F');
+        }
+        return key.toString();
+    }
+
+    public String fingerprint(MaterialRecord material) {
+        EntityPersister persister = persister(material);
+        StringBuilder fingerprint = new StringBuilder(typeOf(material));
+        for (int property : importedProperties(persister, material)) {
+            fingerprint.append('\u001F').append(persister.getValue(material, property));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Copies the imported values of one material onto another of the same type.
+     */
+    public void copyImportedValues(MaterialRecord source, MaterialRecord target) {
+        if (source.getClass() != target.getClass()) {
+            throw new IllegalArgumentException("Cannot copy a " + typeOf(source) + " onto a " + typeOf(target));
+        }
+        EntityPersister persister = persister(target);
+        for (int property : importedProperties(persister, target)) {
+            persister.setValue(target, property, persister.getValue(source, property));
+        }
+    }
+
+    static String typeOf(MaterialRecord material) {
+        return material.getClass().getSimpleName();
+    }
+
+    private int[] importedProperties(EntityPersister persister, MaterialRecord material) {
+        return importedProperties.computeIfAbsent(material.getClass(), type -> {
+            String[] names = persister.getPropertyNames();
+            Type[] types = persister.getPropertyTypes();
+            List<Integer> properties = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                boolean version = persister.isVersioned() && i == persister.getVersionProperty();
+                if (!version && !types[i].isAssociationType() && !NOT_IMPORTED.contains(names[i])) {
+                    properties.add(i);
+                }
+            }
+            return properties.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    /**
+     * Helper method to map the key property names to property indexes: -2 for
+     * the material type, -1 for a property this material type does not have
+     */
+    private int[] resolveKeyProperties(EntityPersister persister) {
+        List<String> names = List.of(persister.getPropertyNames());
+        return naturalKey.stream()
+                .mapToInt(name -> TYPE_KEY.equals(name) ? -2 : names.indexOf(name))
+                .toArray();
+    }
+
+    private EntityPersister persister(MaterialRecord material) {
+        return entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(material.getClass());
+    }
+}
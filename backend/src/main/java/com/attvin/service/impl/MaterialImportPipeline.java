@@ -0,0 +1,390 @@
+package com.attvin.service.impl;
+
+import com.attvin.io.ImportCancelledException;
+import com.attvin.io.ImportListener;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialRow;
+import com.attvin.io.MaterialSource;
+import com.attvin.io.RowError;
+import com.attvin.model.MaterialRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports rows from a {@link MaterialSource} (an Excel sheet, CSV or NDJSON)
+ * in three stages:
+ *
+ * 1. A reader thread reads the source and hands batches of raw rows to the
+ *    parse executor.
+ * 2. The parse workers convert the cells, validate the enum values and
+ *    required fields, and build the typed material entities.
+ * 3. The calling thread takes the parsed batches in source order and
+ *    writes them in chunks, one transaction per chunk. In upsert mode it
+ *    first matches each row against a hash index of the stored materials,
+ *    built once per import, so unchanged rows cost no writes at all.
+ *
+ * The reader may only run a fixed number of batches ahead of the writer, so
+ * memory stays bounded however large the input is, and cell conversion on
+ * several cores keeps the writer busy with the database.
+ *
+ * Called inside a transaction, as the synchronous imports are, the chunks
+ * join it instead, and a chunk that fails to save fails the whole import.
+ */
+@Component
+public class MaterialImportPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterialImportPipeline.class);
+
+    static final int PARSE_BATCH_SIZE = 100;
+
+    private static final CompletableFuture<List<ParsedRow>> END_OF_INPUT = CompletableFuture.completedFuture(List.of());
+
+    private final MaterialFactory materialFactory;
+    private final MaterialImportWriter writer;
+    private final MaterialImportKeys importKeys;
+    private final ThreadPoolExecutor parseExecutor;
+    private final int chunkSize;
+    private final AtomicInteger readerNumber = new AtomicInteger();
+
+    public MaterialImportPipeline(MaterialFactory materialFactory,
+                                  MaterialImportWriter writer,
+                                  MaterialImportKeys importKeys,
+                                  @Qualifier("importParseExecutor") ThreadPoolExecutor parseExecutor,
+                                  @Value("${material.import.chunk-size:500}") int chunkSize) {
+        this.materialFactory = materialFactory;
+        this.writer = writer;
+        this.importKeys = importKeys;
+        this.parseExecutor = parseExecutor;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports every row of the source, reporting progress to the listener.
+     * Rows that cannot be imported are reported and skipped; if a chunk fails
+     * to commit, all of its rows are reported as failed, unless the import
+     * runs in the caller's transaction, where the failure is rethrown.
+     */
+    public void run(MaterialSource source, ImportMode mode, ImportListener listener) throws IOException {
+        // Built before reading starts, so the imported rows are not in it
+        ImportIndex index = mode == ImportMode.UPSERT ? importKeys.buildIndex() : null;
+        ChunkWriter chunkWriter = new ChunkWriter(index, listener);
+
+        // Two batches per worker keep every worker busy while the writer catches up
+        BlockingQueue<CompletableFuture<List<ParsedRow>>> parsed =
+                new ArrayBlockingQueue<>(2 * parseExecutor.getMaximumPoolSize());
+        SourceReader sourceReader = new SourceReader(source, mode, parsed);
+        Thread readerThread = new Thread(sourceReader, "import-reader-" + readerNumber.incrementAndGet());
+        readerThread.start();
+
+        try {
+            while (true) {
+                CompletableFuture<List<ParsedRow>> batch = parsed.take();
+                if (batch == END_OF_INPUT) {
+                    break;
+                }
+                for (ParsedRow row : batch.join()) {
+                    listener.rowRead();
+                    if (row.error != null) {
+                        listener.rowFailed(row.error);
+                    } else {
+                        chunkWriter.add(row);
+                    }
+                }
+            }
+            sourceReader.rethrowFailure();
+            chunkWriter.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The import was interrupted", e);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        } finally {
+            sourceReader.stop();
+            awaitQuietly(readerThread);
+        }
+    }
+
+    /**
+     * Parse stage: turns raw rows into entities ready to persist, or into row errors.
+     */
+    private List<ParsedRow> parse(List<MaterialRow> rows, ImportMode mode) {
+        List<ParsedRow> result = new ArrayList<>(rows.size());
+        for (MaterialRow row : rows) {
+            ParsedRow parsedRow = new ParsedRow(row.getRowNumber());
+            try {
+                MaterialRecord material = materialFactory.build(row.toMaterialDTO());
+                materialFactory.checkRequiredValues(material);
+                parsedRow.material = material;
+                if (mode == ImportMode.UPSERT) {
+                    // The hashing work is done here so the writer only has to look the row up
+                    parsedRow.id = row.getId();
+                    parsedRow.key = importKeys.naturalKey(material);
+                    parsedRow.fingerprint = importKeys.fingerprint(material);
+                }
+            } catch (RuntimeException e) {
+                parsedRow.error = new RowError(row.getRowNumber(), describe(e));
+            }
+            result.add(parsedRow);
+        }
+        return result;
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private static void awaitQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ParsedRow {
+        private final int rowNumber;
+        private MaterialRecord material;
+        private RowError error;
+        // Upsert imports only
+        private Long id;
+        private String key;
+        private String fingerprint;
+        private ImportIndex.Entry target;
+
+        ParsedRow(int rowNumber) {
+            this.rowNumber = rowNumber;
+        }
+    }
+
+    /**
+     * Writer stage. Collects rows into chunks and, for upsert imports, decides
+     * for each row whether it creates, updates or skips a material. Runs on
+     * the thread that called {@link #run}, so rows are matched in source order.
+     */
+    private final class ChunkWriter {
+        private final ImportIndex index; // null unless upserting
+        private final ImportListener listener;
+        private final List<ParsedRow> inserts = new ArrayList<>();
+        private final List<ParsedRow> updates = new ArrayList<>();
+
+        ChunkWriter(ImportIndex index, ImportListener listener) {
+            this.index = index;
+            this.listener = listener;
+        }
+
+        void add(ParsedRow row) {
+            if (index == null) {
+                inserts.add(row);
+            } else if (!match(row)) {
+                return;
+            }
+            if (inserts.size() + updates.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Helper method to queue the row as an insert or update; returns false if it was skipped or failed
+         */
+        private boolean match(ParsedRow row) {
+            ImportIndex.Entry entry = index.find(row.id, row.key);
+            if (entry != null && entry.isPending()) {
+                // Created earlier in this chunk; write it first so the row can update it
+                flush();
+                entry = index.find(row.id, row.key);
+            }
+
+            String type = MaterialImportKeys.typeOf(row.material);
+            if (entry == null && row.id != null) {
+                listener.rowFailed(new RowError(row.rowNumber, "No material found with id: " + row.id));
+                return false;
+            }
+            if (entry == null) {
+                row.target = index.addPending(type, row.key, row.fingerprint);
+                inserts.add(row);
+                return true;
+            }
+            if (!entry.getType().equals(type)) {
+                listener.rowFailed(new RowError(row.rowNumber, "Material " + entry.getId() + " is a "
+                        + entry.getType() + "; the type of an existing material cannot be changed"));
+                return false;
+            }
+            if (row.fingerprint.equals(entry.getFingerprint())) {
+                listener.rowSkipped();
+                return false;
+            }
+            index.updated(entry, row.key, row.fingerprint);
+            row.target = entry;
+            updates.add(row);
+            return true;
+        }
+
+        /**
+         * Helper method to commit the pending rows and report the outcome
+         */
+        void flush() {
+            if (listener.isCancelled()) {
+                throw new ImportCancelledException();
+            }
+            if (inserts.isEmpty() && updates.isEmpty()) {
+                return;
+            }
+            List<MaterialRecord> created = new ArrayList<>(inserts.size());
+            for (ParsedRow row : inserts) {
+                created.add(row.material);
+            }
+            // A later row for the same material replaces the values of an earlier one
+            Map<Long, MaterialRecord> updated = new LinkedHashMap<>();
+            for (ParsedRow row : updates) {
+                updated.put(row.target.getId(), row.material);
+            }
+
+            try {
+                Set<Long> missing = writer.write(created, updated);
+                for (ParsedRow row : inserts) {
+                    if (row.target != null) {
+                        index.created(row.target, row.material.getId());
+                    }
+                }
+                int updatedRows = 0;
+                for (ParsedRow row : updates) {
+                    if (missing.contains(row.target.getId())) {
+                        index.removed(row.target);
+                        listener.rowFailed(new RowError(row.rowNumber, "No material found with id: " + row.target.getId()));
+                    } else {
+                        index.saved(row.target);
+                        updatedRows++;
+                    }
+                }
+                listener.rowsCreated(inserts.size());
+                listener.rowsUpdated(updatedRows);
+            } catch (RuntimeException e) {
+                if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                    // The caller's transaction can no longer commit, so no later chunk would be saved either
+                    throw e;
+                }
+                logger.warn("Failed to import a chunk of {} rows", inserts.size() + updates.size(), e);
+                for (List<ParsedRow> rows : List.of(inserts, updates)) {
+                    for (ParsedRow row : rows) {
+                        if (row.target != null) {
+                            index.writeFailed(row.target);
+                        }
+                        listener.rowFailed(new RowError(row.rowNumber, "Not saved: " + describe(e)));
+                    }
+                }
+            }
+            inserts.clear();
+            updates.clear();
+        }
+    }
+
+    /**
+     * Reader stage. Runs on its own thread and always ends the queue with
+     * {@link #END_OF_INPUT}, also when reading fails or the writer stops early.
+     */
+    private final class SourceReader implements Runnable {
+        private final MaterialSource source;
+        private final ImportMode mode;
+        private final BlockingQueue<CompletableFuture<List<ParsedRow>>> parsed;
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private volatile boolean stopped;
+        private List<MaterialRow> batch = new ArrayList<>(PARSE_BATCH_SIZE);
+
+        SourceReader(MaterialSource source, ImportMode mode, BlockingQueue<CompletableFuture<List<ParsedRow>>> parsed) {
+            this.source = source;
+            this.mode = mode;
+            this.parsed = parsed;
+        }
+
+        @Override
+        public void run() {
+            try {
+                source.read(row -> {
+                    if (stopped) {
+                        throw new ReaderStoppedException();
+                    }
+                    batch.add(row);
+                    if (batch.size() == PARSE_BATCH_SIZE) {
+                        submitBatch();
+                    }
+                });
+                submitBatch();
+            } catch (ReaderStoppedException e) {
+                // The writer no longer takes batches
+            } catch (Exception e) {
+                failure.set(e);
+            } finally {
+                try {
+                    enqueue(END_OF_INPUT);
+                } catch (ReaderStoppedException e) {
+                    // The writer has already left
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        void rethrowFailure() throws IOException {
+            Exception e = failure.get();
+            if (e instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+        }
+
+        private void submitBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<MaterialRow> rows = batch;
+            batch = new ArrayList<>(PARSE_BATCH_SIZE);
+            // When all workers are busy the reader parses the batch itself, which also slows it down
+            enqueue(CompletableFuture.supplyAsync(() -> parse(rows, mode), parseExecutor));
+        }
+
+        /**
+         * Waits for room in the queue; this is what keeps the reader from running ahead of the writer.
+         */
+        private void enqueue(CompletableFuture<List<ParsedRow>> batchFuture) {
+            try {
+                while (!parsed.offer(batchFuture, 100, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        throw new ReaderStoppedException();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ReaderStoppedException();
+            }
+        }
+    }
+
+    private static final class ReaderStoppedException extends RuntimeException {
+        ReaderStoppedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.attvin.service.impl;
+
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.model.MaterialRecord;
+import com.attvin.repository.MaterialRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writing stage of the import pipeline: creates and updates the materials of
+ * one chunk in one transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class MaterialImportWriter {
+
+    // Matches hibernate.jdbc.batch_size so every flush sends full batches
+    static final int FLUSH_INTERVAL = 50;
+
+    private final EntityManager entityManager;
+    private final MaterialRepository materialRepository;
+    private final MaterialImportKeys importKeys;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Inserts the new materials as JDBC batches, flushing and clearing the
+     * persistence context every {@link #FLUSH_INTERVAL} rows to keep it small,
+     * then copies the imported values onto the materials to update, keyed by ID.
+     * The updated materials are loaded with a single query.
+     *
+     * @return the IDs to update that no longer exist, because the materials
+     * were deleted while the import ran
+     */
+    @Transactional
+    public Set<Long> write(List<MaterialRecord> inserts, Map<Long, MaterialRecord> updates) {
+        int persisted = 0;
+        for (MaterialRecord material : inserts) {
+            entityManager.persist(material);
+            eventPublisher.publishEvent(MaterialChangedEvent.created(material));
+            if (++persisted % FLUSH_INTERVAL == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        Set<Long> missing = new HashSet<>(updates.keySet());
+        if (!updates.isEmpty()) {
+            for (MaterialRecord material : materialRepository.findAllById(updates.keySet())) {
+                missing.remove(material.getId());
+                MaterialChangedEvent.Snapshot before = MaterialChangedEvent.Snapshot.of(material);
+                importKeys.copyImportedValues(updates.get(material.getId()), material);
+                eventPublisher.publishEvent(MaterialChangedEvent.updated(before, material));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return missing;
+    }
+}
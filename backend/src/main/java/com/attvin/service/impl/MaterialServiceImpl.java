@@ -1,8 +1,26 @@
 package com.attvin.service.impl;
 
+import com.attvin.dto.ImportSummaryDTO;
+import com.attvin.dto.MaterialExportFilter;
 import com.attvin.dto.MaterialPictureDTO;
 import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.dto.MaterialSliceDTO;
+import com.attvin.dto.MaterialSort;
 import com.attvin.dto.MaterialStatsDTO;
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.event.MaterialPicturesChangedEvent;
+import com.attvin.event.PicturesAddedEvent;
+import com.attvin.event.PicturesRemovedEvent;
+import com.attvin.io.ExcelTemplate;
+import com.attvin.io.ImportListener;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialColumns;
+import com.attvin.io.MaterialSheetReader;
+import com.attvin.io.MaterialSource;
+import com.attvin.io.MaterialTextFormat;
+import com.attvin.io.MaterialTextReader;
+import com.attvin.io.MaterialTextWriter;
+import com.attvin.io.RowError;
 import com.attvin.model.MaterialPicture;
 import com.attvin.model.MaterialRecord;
 import com.attvin.model.Window;
@@ -11,75 +29,119 @@ import com.attvin.model.Desk;
 import com.attvin.model.DrawerUnit;
 import com.attvin.model.OfficeCabinet;
 import com.attvin.repository.MaterialRepository;
+import com.attvin.repository.MaterialPictureMetadata;
 import com.attvin.repository.MaterialPictureRepository;
+import com.attvin.search.MaterialSearchIndex;
+import com.attvin.search.MaterialSearchIndexer;
+import com.attvin.search.SearchResult;
 import com.attvin.service.MaterialService;
+import com.attvin.storage.PictureResource;
+import com.attvin.storage.PictureStorage;
+import com.attvin.storage.PictureThumbnails;
+import com.attvin.storage.StoredPicture;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellRangeAddressList;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class MaterialServiceImpl implements MaterialService {
 
+    private static final Logger logger = LoggerFactory.getLogger(MaterialServiceImpl.class);
+
     private final MaterialRepository materialRepository;
     private final MaterialPictureRepository materialPictureRepository;
+    private final PictureStorage pictureStorage;
+    private final PictureThumbnails pictureThumbnails;
+    private final MaterialStatsCounters materialStatsCounters;
+    private final MaterialSearchIndex searchIndex;
+    private final MaterialSearchIndexer searchIndexer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final MaterialFactory materialFactory;
+    private final MaterialImportPipeline importPipeline;
+    private final MaterialDetailCache materialDetailCache;
+    private final MaterialChangeSequence materialChangeSequence;
+    
+    // Column widths in characters, matching MaterialColumns.HEADERS
+    private static final int[] EXPORT_COLUMN_WIDTHS = {
+        30, 15, 15, 12, 12, 40,
+        8, 8, 8,
+        12, 18, 11,
+        14, 12, 9,
+        16, 11, 10
+    };
+    private static final int EXPORT_ROW_WINDOW = 100;
+    private static final int EXPORT_CLEAR_INTERVAL = 500;
+    private static final int MAX_SLICE_SIZE = 100;
+
+    // Part of the template's ETag; increase it whenever generateExcelTemplate() changes
+    private static final int TEMPLATE_VERSION = 1;
+    // The enums whose values the template lists, so a new constant also changes the ETag
+    private static final List<Class<? extends Enum<?>>> TEMPLATE_ENUMS = List.of(
+            Desk.DeskType.class, Window.OpeningType.class, OfficeCabinet.OpeningType.class,
+            Window.HingeSide.class, Door.SwingDirection.class);
+
+    // Built on the first request, see getExcelTemplate()
+    private volatile ExcelTemplate excelTemplate;
 
     @Override
-    @Transactional(readOnly = true)
     public MaterialStatsDTO getMaterialStats() {
-        List<MaterialRecord> allMaterials = materialRepository.findAll();
-        
-        long totalCount = allMaterials.size();
-        
-        // Count by condition
-        Map<String, Long> conditionCounts = new HashMap<>();
-        for (MaterialRecord material : allMaterials) {
-            String condition = material.getMaterialCondition();
-            conditionCounts.put(condition, conditionCounts.getOrDefault(condition, 0L) + 1);
-        }
-        
-        // Count by category
-        Map<String, Long> categoryCounts = new HashMap<>();
-        for (MaterialRecord material : allMaterials) {
-            String category = material.getCategory();
-            categoryCounts.put(category, categoryCounts.getOrDefault(category, 0L) + 1);
-        }
-        
-        // Count by type (using discriminator)
-        Map<String, Long> typeCounts = new HashMap<>();
-        for (MaterialRecord material : allMaterials) {
-            String type = material.getClass().getSimpleName();
-            typeCounts.put(type, typeCounts.getOrDefault(type, 0L) + 1);
-        }
-        
-        // Count recent additions (last 30 days)
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        long recentCount = allMaterials.stream()
-                .filter(m -> m.getDateAdded().isAfter(thirtyDaysAgo))
-                .count();
-        
-        return MaterialStatsDTO.builder()
-                .totalCount(totalCount)
-                .conditionCounts(conditionCounts)
-                .categoryCounts(categoryCounts)
-                .typeCounts(typeCounts)
-                .recentAdditionsCount(recentCount)
-                .build();
+        // Served from the in-memory counters, which are kept up to date
+        // from MaterialChangedEvents and reconciled with the database
+        return materialStatsCounters.snapshot();
+    }
+
+    @Override
+    public String getChangeToken() {
+        return materialChangeSequence.currentToken();
     }
 
     // Implement other methods with minimal functionality for testing
@@ -87,27 +149,11 @@ public class MaterialServiceImpl implements MaterialService {
     @Override
     @Transactional
     public MaterialRecordDTO createMaterial(MaterialRecordDTO materialDTO, List<MultipartFile> pictures) {
-        // Create the appropriate material type based on materialDTO.getMaterialType()
-        MaterialRecord material;
-        
-        // This would require implementing factory pattern or specific type creation
-        // For now, we can use a simple factory method or reflection
-        // Example (you'll need to implement or adjust based on your model hierarchy):
-        material = createMaterialInstance(materialDTO);
-        
-        // Set basic properties
-        material.setName(materialDTO.getName());
-        material.setCategory(materialDTO.getCategory());
-        material.setMaterialCondition(materialDTO.getMaterialCondition());
-        material.setColor(materialDTO.getColor());
-        material.setNotes(materialDTO.getNotes());
-        material.setDateAdded(LocalDateTime.now());
-        
-        // Set specific properties based on material type
-        setTypeSpecificProperties(material, materialDTO);
+        MaterialRecord material = materialFactory.build(materialDTO);
         
         // Save the material entity
         material = materialRepository.save(material);
+        eventPublisher.publishEvent(MaterialChangedEvent.created(material));
         
         // Process pictures if provided
         if (pictures != null && !pictures.isEmpty()) {
@@ -122,7 +168,7 @@ public class MaterialServiceImpl implements MaterialService {
                     picture.setFileSize(pictureFile.getSize());
                     picture.setUploadDate(LocalDateTime.now());
                     picture.setIsPrimary(i == 0); // First picture is primary by default
-                    picture.setPictureData(pictureFile.getBytes());
+                    picture.setStorageKey(storePicture(pictureFile));
                     
                     // Associate with material
                     material.addPicture(picture);
@@ -133,161 +179,30 @@ public class MaterialServiceImpl implements MaterialService {
             
             // Save the material with pictures
             material = materialRepository.save(material);
+            publishPicturesAdded(material);
         }
-          // Convert saved entity back to DTO
-        MaterialRecordDTO savedDto = new MaterialRecordDTO();
-        savedDto.setId(material.getId());
-        savedDto.setName(material.getName());
-        savedDto.setCategory(material.getCategory());
-        savedDto.setMaterialType(material.getClass().getSimpleName());
-        savedDto.setMaterialCondition(material.getMaterialCondition());
-        savedDto.setColor(material.getColor());
-        savedDto.setNotes(material.getNotes());
-        savedDto.setDateAdded(material.getDateAdded());
-        
-        // Map dimensions and type-specific properties
-        mapDimensionsToDTO(material, savedDto);
-        
-        // Map pictures to DTOs if needed
-        if (material.getPictures() != null && !material.getPictures().isEmpty()) {
-            savedDto.setPictures(material.getPictures().stream()
-                .map(pic -> {
-                    MaterialPictureDTO picDto = new MaterialPictureDTO();
-                    picDto.setId(pic.getId());
-                    picDto.setFileName(pic.getFileName());
-                    picDto.setContentType(pic.getContentType());
-                    picDto.setFileSize(pic.getFileSize());
-                    picDto.setUploadDate(pic.getUploadDate());
-                    picDto.setIsPrimary(pic.getIsPrimary());
-                    return picDto;
-                })
-                .collect(Collectors.toList()));
-        }
-        
-        return savedDto;
-    }    // Helper method to create the appropriate material instance
-    private MaterialRecord createMaterialInstance(MaterialRecordDTO dto) {
-        String materialType = dto.getMaterialType();
-        
-        // Handle the material type in a case-insensitive manner
-        switch (materialType.toUpperCase()) {
-            case "WINDOW":
-                return new Window();
-            case "DOOR":
-                return new Door();
-            case "DESK":
-                return new Desk();
-            case "DRAWER_UNIT":
-            case "DRAWERUNIT":
-                return new DrawerUnit();
-            case "OFFICE_CABINET":
-            case "OFFICECABINET":
-                return new OfficeCabinet();
-            default:
-                throw new UnsupportedOperationException("Unsupported material type: " + materialType);
-        }
+        // Convert saved entity back to DTO, reading picture metadata only
+        return mapToDTO(material);
     }
 
-    // Helper method to set type-specific properties
-    private void setTypeSpecificProperties(MaterialRecord material, MaterialRecordDTO dto) {
-        String materialType = material.getClass().getSimpleName();
-        
-        switch (materialType) {
-            case "Window":
-                Window window = (Window) material;
-                window.setHeight(dto.getHeight());
-                window.setWidth(dto.getWidth());
-                if (dto.getOpeningType() != null) {
-                    window.setOpeningType(Window.OpeningType.valueOf(dto.getOpeningType()));
-                }
-                if (dto.getHingeSide() != null) {
-                    window.setHingeSide(Window.HingeSide.valueOf(dto.getHingeSide()));
-                }
-                window.setUValue(dto.getUValue());
-                break;
-                
-            case "Door":
-                Door door = (Door) material;
-                door.setHeight(dto.getHeight());
-                door.setWidth(dto.getWidth());
-                if (dto.getSwingDirection() != null) {
-                    door.setSwingDirection(Door.SwingDirection.valueOf(dto.getSwingDirection()));
-                }
-                door.setUValue(dto.getUValue());
-                break;
-                
-            case "Desk":
-                Desk desk = (Desk) material;
-                desk.setDeskType(Desk.DeskType.valueOf(dto.getDeskType()));
-                desk.setMaximumHeight(dto.getMaximumHeight());
-                desk.setWidth(dto.getWidth());
-                desk.setDepth(dto.getDepth());
-                if (dto.getHeightAdjustable() != null) {
-                    desk.setHeightAdjustable(dto.getHeightAdjustable());
-                }
-                break;
-                
-            case "DrawerUnit":
-                DrawerUnit drawerUnit = (DrawerUnit) material;
-                drawerUnit.setHeight(dto.getHeight());
-                drawerUnit.setWidth(dto.getWidth());
-                drawerUnit.setDepth(dto.getDepth());
-                if (dto.getHasWheels() != null) {
-                    drawerUnit.setHasWheels(dto.getHasWheels());
-                }
-                break;
-                
-            case "OfficeCabinet":
-                OfficeCabinet cabinet = (OfficeCabinet) material;
-                cabinet.setHeight(dto.getHeight());
-                cabinet.setWidth(dto.getWidth());
-                cabinet.setDepth(dto.getDepth());
-                if (dto.getOpeningType() != null) {
-                    cabinet.setOpeningType(OfficeCabinet.OpeningType.valueOf(dto.getOpeningType()));
-                }
-                break;
-                
-            default:
-                throw new UnsupportedOperationException("Unsupported material type: " + materialType);
-        }
-    }    @Override
+    @Override
     public MaterialRecordDTO getMaterialById(Long id) {
-        // Find the material entity by ID
-        MaterialRecord material = materialRepository.findById(id)
+        // Detail pages are read far more often than materials change
+        return materialDetailCache.get(id, materialId -> {
+            // Find the material entity by ID
+            MaterialRecord material = materialRepository.findById(materialId)
+                .orElseThrow(() -> new RuntimeException("Material not found with id: " + materialId));
+            
+            // Convert entity to DTO, reading picture metadata only
+            return mapToDTO(material);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long getMaterialVersion(Long id) {
+        return materialRepository.findVersionById(id)
             .orElseThrow(() -> new RuntimeException("Material not found with id: " + id));
-        
-        // Convert entity to DTO
-        MaterialRecordDTO dto = new MaterialRecordDTO();
-        dto.setId(material.getId());
-        dto.setName(material.getName());
-        dto.setCategory(material.getCategory());
-        dto.setMaterialType(material.getClass().getSimpleName());
-        dto.setMaterialCondition(material.getMaterialCondition());
-        dto.setColor(material.getColor());
-        dto.setNotes(material.getNotes());
-        dto.setDateAdded(material.getDateAdded());
-        
-        // Map dimensions and type-specific properties
-        mapDimensionsToDTO(material, dto);
-        
-        // Map pictures
-        if (material.getPictures() != null && !material.getPictures().isEmpty()) {
-            dto.setPictures(material.getPictures().stream()
-                .map(pic -> {
-                    MaterialPictureDTO picDto = new MaterialPictureDTO();
-                    picDto.setId(pic.getId());
-                    picDto.setFileName(pic.getFileName());
-                    picDto.setContentType(pic.getContentType());
-                    picDto.setFileSize(pic.getFileSize());
-                    picDto.setUploadDate(pic.getUploadDate());
-                    picDto.setIsPrimary(pic.getIsPrimary());
-                    picDto.setDescription(pic.getDescription());
-                    return picDto;
-                })
-                .collect(Collectors.toList()));
-        }
-        
-        return dto;
     }
 
     @Override
@@ -296,6 +211,7 @@ public class MaterialServiceImpl implements MaterialService {
         // Find the existing material by ID
         MaterialRecord material = materialRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Material not found with id: " + id));
+        MaterialChangedEvent.Snapshot before = MaterialChangedEvent.Snapshot.of(material);
         
         // Update basic properties
         material.setName(materialDTO.getName());
@@ -307,40 +223,11 @@ public class MaterialServiceImpl implements MaterialService {
         // Update specific properties based on material type
         updateTypeSpecificProperties(material, materialDTO);
         
-        // Save the updated material
-        material = materialRepository.save(material);
-          // Convert the updated entity back to DTO
-        MaterialRecordDTO updatedDTO = new MaterialRecordDTO();
-        updatedDTO.setId(material.getId());
-        updatedDTO.setName(material.getName());
-        updatedDTO.setCategory(material.getCategory());
-        updatedDTO.setMaterialType(material.getClass().getSimpleName());
-        updatedDTO.setMaterialCondition(material.getMaterialCondition());
-        updatedDTO.setColor(material.getColor());
-        updatedDTO.setNotes(material.getNotes());
-        updatedDTO.setDateAdded(material.getDateAdded());
-        
-        // Map dimensions and type-specific properties
-        mapDimensionsToDTO(material, updatedDTO);
-        
-        // Map pictures to DTOs if they exist
-        if (material.getPictures() != null && !material.getPictures().isEmpty()) {
-            updatedDTO.setPictures(material.getPictures().stream()
-                .map(pic -> {
-                    MaterialPictureDTO picDto = new MaterialPictureDTO();
-                    picDto.setId(pic.getId());
-                    picDto.setFileName(pic.getFileName());
-                    picDto.setContentType(pic.getContentType());
-                    picDto.setFileSize(pic.getFileSize());
-                    picDto.setUploadDate(pic.getUploadDate());
-                    picDto.setIsPrimary(pic.getIsPrimary());
-                    picDto.setDescription(pic.getDescription());
-                    return picDto;
-                })
-                .collect(Collectors.toList()));
-        }
-        
-        return updatedDTO;
+        // Save the updated material, flushing so the returned DTO carries the new version
+        material = materialRepository.saveAndFlush(material);
+        eventPublisher.publishEvent(MaterialChangedEvent.updated(before, material));
+        // Convert the updated entity back to DTO, reading picture metadata only
+        return mapToDTO(material);
     }
     
     // Helper method to update type-specific properties
@@ -394,176 +281,242 @@ public class MaterialServiceImpl implements MaterialService {
     @Transactional
     public void deleteMaterial(Long id) {
         // Check if the material exists
-        if (!materialRepository.existsById(id)) {
-            throw new RuntimeException("Material not found with id: " + id);
-        }
+        MaterialRecord material = materialRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("Material not found with id: " + id));
+        MaterialChangedEvent.Snapshot before = MaterialChangedEvent.Snapshot.of(material);
+        List<String> storageKeys = material.getPictures().stream()
+            .map(MaterialPicture::getStorageKey)
+            .collect(Collectors.toList());
         
         // Spring Data JPA will handle the cascading delete for pictures
         // due to @OneToMany(mappedBy = "material", cascade = CascadeType.ALL) in MaterialRecord
-        materialRepository.deleteById(id);
+        materialRepository.delete(material);
+        eventPublisher.publishEvent(MaterialChangedEvent.deleted(before));
+        eventPublisher.publishEvent(new PicturesRemovedEvent(storageKeys));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MaterialRecordDTO> searchMaterials(String category, String type, String condition, String query, Pageable pageable) {
-        // Query the repository with the provided filters
-        Page<MaterialRecord> materialsPage = materialRepository.searchMaterials(category, type, condition, query, pageable);
-          // Convert the entity page to a DTO page
-        return materialsPage.map(material -> {
-            MaterialRecordDTO dto = new MaterialRecordDTO();
-            // Map properties from entity to DTO
-            dto.setId(material.getId());
-            dto.setName(material.getName());
-            dto.setCategory(material.getCategory());
-            dto.setMaterialType(material.getClass().getSimpleName()); // or another field that stores the type
-            dto.setMaterialCondition(material.getMaterialCondition());
-            dto.setColor(material.getColor());
-            dto.setNotes(material.getNotes());
-            dto.setDateAdded(material.getDateAdded());
-            
-            // Map dimensions based on material type
-            mapDimensionsToDTO(material, dto);
-            
-            // Map pictures if they exist
-            if (material.getPictures() != null && !material.getPictures().isEmpty()) {
-                dto.setPictures(material.getPictures().stream()
-                    .map(pic -> {
-                        MaterialPictureDTO picDto = new MaterialPictureDTO();
-                        picDto.setId(pic.getId());
-                        picDto.setFileName(pic.getFileName());
-                        picDto.setContentType(pic.getContentType());
-                        picDto.setFileSize(pic.getFileSize());
-                        picDto.setUploadDate(pic.getUploadDate());
-                        picDto.setIsPrimary(pic.getIsPrimary());
-                        picDto.setDescription(pic.getDescription());
-                        return picDto;
-                    })
-                    .collect(Collectors.toList()));
-            }
-            
-            return dto;
-        });
-    }    
+        boolean textQuery = query != null && !query.isBlank();
+        if (textQuery && searchIndexer.isBuilt()) {
+            return searchMaterialsByText(category, type, condition, query, pageable);
+        }
+        
+        // Query the repository with the provided filters; text queries only end up here until the index is built
+        Page<MaterialRecord> materialsPage = textQuery
+            ? materialRepository.searchMaterialsByText(category, type, condition, query.trim(), pageable)
+            : materialRepository.searchMaterials(category, type, condition, pageable);
+        // Convert the entity page to a DTO page, loading all picture metadata in one query
+        Map<Long, List<MaterialPictureDTO>> picturesByMaterial = loadPictureMetadata(materialsPage.getContent());
+        return materialsPage.map(material -> mapToDTO(material, picturesByMaterial.get(material.getId())));
+    }
     
+    /**
+     * Cursor-based listing. The page is read with a keyset predicate on the
+     * sort key and ID, one row more than requested to learn whether another
+     * page follows; no count query runs unless a total is asked for.
+     */
     @Override
-    @Transactional
-    public void importMaterialsFromExcel(MultipartFile excelFile) {
-        try (var workbook = new XSSFWorkbook(excelFile.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            // Skip the header row
-            boolean firstRow = true;
-            
-            for (Row row : sheet) {
-                if (firstRow) {
-                    firstRow = false;
-                    continue;
-                }
-                
-                try {
-                    // Extract material data
-                    MaterialRecordDTO materialDTO = new MaterialRecordDTO();
-                    
-                    // Basic fields
-                    materialDTO.setName(getCellValueAsString(row, 0));
-                    materialDTO.setCategory(getCellValueAsString(row, 1));
-                    materialDTO.setMaterialType(getCellValueAsString(row, 2));
-                    materialDTO.setMaterialCondition(getCellValueAsString(row, 3));
-                    materialDTO.setColor(getCellValueAsString(row, 4));
-                    materialDTO.setNotes(getCellValueAsString(row, 5));
-                    
-                    // Dimensions
-                    materialDTO.setWidth(getCellValueAsDouble(row, 6));
-                    materialDTO.setHeight(getCellValueAsDouble(row, 7));
-                    materialDTO.setDepth(getCellValueAsDouble(row, 8));
-                    
-                    // Type-specific fields
-                    materialDTO.setDeskType(getCellValueAsString(row, 9));
-                    materialDTO.setHeightAdjustable(getCellValueAsBoolean(row, 10));
-                    materialDTO.setMaximumHeight(getCellValueAsDouble(row, 11));
-                    materialDTO.setOpeningType(getCellValueAsString(row, 12));
-                    materialDTO.setHingeSide(getCellValueAsString(row, 13));
-                    materialDTO.setUValue(getCellValueAsDouble(row, 14));
-                    materialDTO.setSwingDirection(getCellValueAsString(row, 15));
-                    materialDTO.setHasWheels(getCellValueAsBoolean(row, 16));
-                    
-                    // Set creation date
-                    materialDTO.setDateAdded(LocalDateTime.now());
-                    
-                    // Create the material
-                    createMaterial(materialDTO, null);
-                    
-                } catch (Exception e) {
-                    // Log the error but continue processing the next rows
-                    e.printStackTrace();
-                }
-            }
-            
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to import Excel file: " + e.getMessage(), e);
+    @Transactional(readOnly = true)
+    public MaterialSliceDTO listMaterials(String category, String type, String condition, MaterialSort sort,
+                                          String cursor, int size, boolean includeTotal) {
+        Class<? extends MaterialRecord> entityType = resolveType(type);
+        MaterialCursor after = cursor == null || cursor.isBlank() ? null : MaterialCursor.decode(cursor, sort);
+        Long afterId = after != null ? after.getId() : null;
+        Pageable firstRows = PageRequest.of(0, Math.max(1, Math.min(size, MAX_SLICE_SIZE)) + 1);
+
+        List<MaterialRecord> materials = sort == MaterialSort.NAME
+            ? materialRepository.findByNameAfter(category, entityType, condition,
+                after != null ? after.name() : null, afterId, firstRows)
+            : materialRepository.findNewestAfter(category, entityType, condition,
+                after != null ? after.dateAdded() : null, afterId, firstRows);
+
+        boolean hasMore = materials.size() == firstRows.getPageSize();
+        if (hasMore) {
+            materials = materials.subList(0, materials.size() - 1);
         }
+        Map<Long, List<MaterialPictureDTO>> picturesByMaterial = loadPictureMetadata(materials);
+
+        MaterialSliceDTO slice = new MaterialSliceDTO();
+        slice.setContent(materials.stream()
+            .map(material -> mapToDTO(material, picturesByMaterial.get(material.getId())))
+            .collect(Collectors.toList()));
+        if (hasMore) {
+            slice.setNextCursor(MaterialCursor.after(sort, materials.get(materials.size() - 1)).encode());
+        }
+        if (includeTotal) {
+            // Unfiltered totals come from the live counters, which may trail the latest commit slightly
+            slice.setTotalCount(category == null && entityType == null && condition == null
+                ? materialStatsCounters.snapshot().getTotalCount()
+                : materialRepository.countMatching(category, entityType, condition));
+        }
+        return slice;
     }
 
     /**
-     * Helper method to get cell value as string
+     * Answers a text query from the search index, then loads only the
+     * materials on the requested page. Results are ordered by relevance.
      */
-    private String getCellValueAsString(Row row, int cellIndex) {
-        Cell cell = row.getCell(cellIndex);
-        if (cell == null) {
-            return null;
-        }
+    private Page<MaterialRecordDTO> searchMaterialsByText(String category, String type, String condition, String query, Pageable pageable) {
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        SearchResult result = searchIndex.search(query, category, type, condition, offset, limit);
         
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                return String.valueOf(cell.getNumericCellValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            default:
-                return null;
+        Map<Long, MaterialRecord> materialsById = materialRepository.findAllById(result.getMaterialIds()).stream()
+            .collect(Collectors.toMap(MaterialRecord::getId, Function.identity()));
+        
+        Map<Long, List<MaterialPictureDTO>> picturesByMaterial = loadPictureMetadata(materialsById.values());
+        
+        // Keep the index ranking; skip hits deleted since they were indexed
+        List<MaterialRecordDTO> dtos = result.getMaterialIds().stream()
+            .map(materialsById::get)
+            .filter(Objects::nonNull)
+            .map(material -> mapToDTO(material, picturesByMaterial.get(material.getId())))
+            .collect(Collectors.toList());
+        
+        return new PageImpl<>(dtos, pageable, result.getTotalHits());
+    }
+    
+    /**
+     * Loads the picture metadata for a page of materials with a single query,
+     * instead of initializing each material's pictures collection.
+     */
+    private Map<Long, List<MaterialPictureDTO>> loadPictureMetadata(Collection<MaterialRecord> materials) {
+        if (materials.isEmpty()) {
+            return Collections.emptyMap();
         }
+        List<Long> materialIds = materials.stream()
+            .map(MaterialRecord::getId)
+            .collect(Collectors.toList());
+        
+        return materialPictureRepository.findMetadataByMaterialIdIn(materialIds).stream()
+            .collect(Collectors.groupingBy(MaterialPictureMetadata::getMaterialId,
+                Collectors.mapping(pic -> {
+                    MaterialPictureDTO picDto = new MaterialPictureDTO();
+                    picDto.setId(pic.getId());
+                    picDto.setFileName(pic.getFileName());
+                    picDto.setContentType(pic.getContentType());
+                    picDto.setFileSize(pic.getFileSize());
+                    picDto.setUploadDate(pic.getUploadDate());
+                    picDto.setIsPrimary(pic.getIsPrimary());
+                    picDto.setDescription(pic.getDescription());
+                    return picDto;
+                }, Collectors.toList())));
     }
     
     /**
-     * Helper method to get cell value as double
+     * Helper method to map a single material to a DTO, loading only its picture metadata
      */
-    private Double getCellValueAsDouble(Row row, int cellIndex) {
-        Cell cell = row.getCell(cellIndex);
-        if (cell == null) {
-            return null;
+    private MaterialRecordDTO mapToDTO(MaterialRecord material) {
+        return mapToDTO(material, loadPictureMetadata(List.of(material)).get(material.getId()));
+    }
+    
+    /**
+     * Helper method to map a material entity and its already loaded picture metadata to a DTO
+     */
+    private MaterialRecordDTO mapToDTO(MaterialRecord material, List<MaterialPictureDTO> pictures) {
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        // Map properties from entity to DTO
+        dto.setId(material.getId());
+        dto.setName(material.getName());
+        dto.setCategory(material.getCategory());
+        dto.setMaterialType(material.getClass().getSimpleName()); // or another field that stores the type
+        dto.setMaterialCondition(material.getMaterialCondition());
+        dto.setColor(material.getColor());
+        dto.setNotes(material.getNotes());
+        dto.setDateAdded(material.getDateAdded());
+        dto.setLastModified(material.getLastModified());
+        dto.setVersion(material.getVersion());
+        
+        // Map dimensions based on material type
+        mapDimensionsToDTO(material, dto);
+        
+        // Map pictures if they exist
+        if (pictures != null && !pictures.isEmpty()) {
+            dto.setPictures(pictures);
         }
         
-        switch (cell.getCellType()) {
-            case NUMERIC:
-                return cell.getNumericCellValue();
-            case STRING:
-                try {
-                    return Double.parseDouble(cell.getStringCellValue());
-                } catch (NumberFormatException e) {
-                    return null;
-                }
-            default:
-                return null;
+        return dto;
+    }
+    
+    @Override
+    @Transactional
+    public ImportSummaryDTO importMaterialsFromExcel(MultipartFile excelFile, ImportMode mode) {
+        Path spooled = null;
+        try {
+            // The event reader needs a file; the upload may only exist as a stream
+            spooled = Files.createTempFile("material-import-", ".xlsx");
+            try (InputStream content = excelFile.getInputStream()) {
+                Files.copy(content, spooled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            File sheet = spooled.toFile();
+            return importMaterials(rows -> MaterialSheetReader.read(sheet, rows), mode, "Excel");
+            
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to import Excel file: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(spooled);
+        }
+    }
+    
+    @Override
+    @Transactional
+    public ImportSummaryDTO importMaterials(InputStream content, MaterialTextFormat format, ImportMode mode) {
+        try {
+            // Read as it arrives; the text formats need no spooling
+            return importMaterials(rows -> MaterialTextReader.read(content, format, rows), mode, format.name());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to import " + format + ": " + e.getMessage(), e);
         }
     }
     
     /**
-     * Helper method to get cell value as boolean
-     */    private Boolean getCellValueAsBoolean(Row row, int cellIndex) {
-        Cell cell = row.getCell(cellIndex);
-        if (cell == null) {
-            return null;
+     * Helper method to run an import and count its outcome
+     */
+    private ImportSummaryDTO importMaterials(MaterialSource source, ImportMode mode, String formatName) throws IOException {
+        ImportSummaryDTO summary = new ImportSummaryDTO();
+        summary.setMode(mode.name());
+        importPipeline.run(source, mode, new ImportListener() {
+            @Override
+            public void rowsCreated(int count) {
+                summary.setRowsCreated(summary.getRowsCreated() + count);
+            }
+
+            @Override
+            public void rowsUpdated(int count) {
+                summary.setRowsUpdated(summary.getRowsUpdated() + count);
+            }
+
+            @Override
+            public void rowSkipped() {
+                summary.setRowsSkipped(summary.getRowsSkipped() + 1);
+            }
+
+            @Override
+            public void rowFailed(RowError error) {
+                // Log the error but continue processing the next rows
+                summary.setRowsFailed(summary.getRowsFailed() + 1);
+                logger.warn("Skipping row {} of the imported {}: {}", error.getRowNumber(), formatName, error.getReason());
+            }
+        });
+        logger.info("Imported materials from {} ({}): {} created, {} updated, {} unchanged, {} failed", formatName,
+                mode, summary.getRowsCreated(), summary.getRowsUpdated(), summary.getRowsSkipped(), summary.getRowsFailed());
+        return summary;
+    }
+    
+    /**
+     * Helper method to delete a temporary file, ignoring failures
+     */
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
         }
-        
-        switch (cell.getCellType()) {
-            case BOOLEAN:
-                return cell.getBooleanCellValue();
-            case STRING:
-                return Boolean.parseBoolean(cell.getStringCellValue());
-            case NUMERIC:
-                return cell.getNumericCellValue() != 0;
-            default:
-                return null;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete temporary file {}", file, e);
         }
     }
     
@@ -620,10 +573,13 @@ public class MaterialServiceImpl implements MaterialService {
     }
 
     @Override
-    public byte[] exportMaterialsToExcel() {
-        try {
-            // Create workbook and sheet
-            Workbook workbook = new XSSFWorkbook();
+    @Transactional(readOnly = true)
+    public void exportMaterialsToExcel(OutputStream outputStream, MaterialExportFilter filter) {
+        // Only the last EXPORT_ROW_WINDOW rows are kept in memory; older rows are flushed to a temp file,
+        // which closing the workbook deletes
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+             Stream<MaterialRecord> materials = streamForExport(filter)) {
+            workbook.setCompressTempFiles(true);
             Sheet sheet = workbook.createSheet("Materials");
             
             // Create header row with styles
@@ -633,108 +589,105 @@ public class MaterialServiceImpl implements MaterialService {
             headerFont.setBold(true);
             headerStyle.setFont(headerFont);
             
-            // Define the headers
-            String[] headers = {
-                "Name", "Category", "Material Type", "Condition", "Color", "Notes", 
-                "Width", "Height", "Depth", 
-                "Desk Type", "Height Adjustable", "Max Height",
-                "Opening Type", "Hinge Side", "U-Value", 
-                "Swing Direction", "Has Wheels"
-            };
-            
-            // Create header cells
-            for (int i = 0; i < headers.length; i++) {
+            // Create header cells; widths are fixed, as autosizing would need every row in memory
+            for (int i = 0; i < MaterialColumns.HEADERS.length; i++) {
                 Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
+                cell.setCellValue(MaterialColumns.HEADERS[i]);
                 cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, EXPORT_COLUMN_WIDTHS[i] * 256);
             }
             
-            // Get all materials
-            List<MaterialRecord> materials = materialRepository.findAll();
-            
             // Create data rows
             int rowNum = 1;
-            for (MaterialRecord material : materials) {
-                Row row = sheet.createRow(rowNum++);
-                
-                // Basic information
-                row.createCell(0).setCellValue(material.getName());
-                row.createCell(1).setCellValue(material.getCategory());
-                row.createCell(2).setCellValue(material.getClass().getSimpleName());
-                row.createCell(3).setCellValue(material.getMaterialCondition());
-                row.createCell(4).setCellValue(material.getColor() != null ? material.getColor() : "");
-                row.createCell(5).setCellValue(material.getNotes() != null ? material.getNotes() : "");
-                
-                // Type-specific information
-                switch (material.getClass().getSimpleName()) {
-                    case "Desk":
-                        Desk desk = (Desk) material;
-                        row.createCell(6).setCellValue(desk.getWidth());
-                        row.createCell(7).setCellValue(desk.getMaximumHeight());
-                        row.createCell(8).setCellValue(desk.getDepth());
-                        row.createCell(9).setCellValue(desk.getDeskType().name());
-                        row.createCell(10).setCellValue(desk.getHeightAdjustable());
-                        row.createCell(11).setCellValue(desk.getMaximumHeight());
-                        break;
-                    
-                    case "Window":
-                        Window window = (Window) material;
-                        row.createCell(6).setCellValue(window.getWidth());
-                        row.createCell(7).setCellValue(window.getHeight());
-                        row.createCell(8).setCellValue(0); // No depth for windows
-                        row.createCell(12).setCellValue(window.getOpeningType().name());
-                        if (window.getHingeSide() != null) {
-                            row.createCell(13).setCellValue(window.getHingeSide().name());
-                        }
-                        if (window.getUValue() != null) {
-                            row.createCell(14).setCellValue(window.getUValue());
-                        }
-                        break;
-                        
-                    case "Door":
-                        Door door = (Door) material;
-                        row.createCell(6).setCellValue(door.getWidth());
-                        row.createCell(7).setCellValue(door.getHeight());
-                        row.createCell(15).setCellValue(door.getSwingDirection().name());
-                        if (door.getUValue() != null) {
-                            row.createCell(14).setCellValue(door.getUValue());
-                        }
-                        break;
-                        
-                    case "DrawerUnit":
-                        DrawerUnit drawerUnit = (DrawerUnit) material;
-                        row.createCell(6).setCellValue(drawerUnit.getWidth());
-                        row.createCell(7).setCellValue(drawerUnit.getHeight());
-                        row.createCell(8).setCellValue(drawerUnit.getDepth());
-                        row.createCell(16).setCellValue(drawerUnit.getHasWheels());
-                        break;
-                        
-                    case "OfficeCabinet":
-                        OfficeCabinet cabinet = (OfficeCabinet) material;
-                        row.createCell(6).setCellValue(cabinet.getWidth());
-                        row.createCell(7).setCellValue(cabinet.getHeight());
-                        row.createCell(8).setCellValue(cabinet.getDepth());
-                        row.createCell(12).setCellValue(cabinet.getOpeningType().name());
-                        break;
+            Iterator<MaterialRecord> iterator = materials.iterator();
+            while (iterator.hasNext()) {
+                writeExportRow(sheet.createRow(rowNum), iterator.next());
+                // Detach the rows written so far so the persistence context does not grow with the export
+                if (rowNum++ % EXPORT_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
                 }
             }
             
-            // Auto-size columns
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-            }
-            
-            // Write the workbook to a byte array
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             workbook.write(outputStream);
-            workbook.close();
-            
-            return outputStream.toByteArray();
-            
         } catch (IOException e) {
             throw new RuntimeException("Failed to export materials to Excel", e);
         }
     }
+    
+    /**
+     * Helper method to stream the materials to export in ID order. With a text
+     * query the matching IDs come from the search index and are loaded in batches.
+     */
+    private Stream<MaterialRecord> streamForExport(MaterialExportFilter filter) {
+        if (filter.getQuery() == null || filter.getQuery().isBlank()) {
+            return materialRepository.streamForExport(
+                    filter.getCategory(), resolveType(filter.getType()), filter.getCondition(), filter.getModifiedSince());
+        }
+        List<Long> ids = new ArrayList<>(searchIndex.search(filter.getQuery(), filter.getCategory(), filter.getType(),
+                filter.getCondition(), 0, Integer.MAX_VALUE).getMaterialIds());
+        Collections.sort(ids);
+        int batches = (ids.size() + EXPORT_CLEAR_INTERVAL - 1) / EXPORT_CLEAR_INTERVAL;
+        return IntStream.range(0, batches)
+                .mapToObj(batch -> ids.subList(batch * EXPORT_CLEAR_INTERVAL,
+                        Math.min(ids.size(), (batch + 1) * EXPORT_CLEAR_INTERVAL)))
+                .flatMap(batch -> materialRepository.findForExport(batch, filter.getModifiedSince()).stream());
+    }
+    
+    @Override
+    public void validateExportFilter(MaterialExportFilter filter) {
+        resolveType(filter.getType());
+    }
+
+    /**
+     * Helper method to resolve an optional material type filter to its entity class
+     */
+    private Class<? extends MaterialRecord> resolveType(String type) {
+        if (type == null || type.isBlank()) {
+            return null;
+        }
+        try {
+            return materialFactory.entityClass(type);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method to write one material to an export row
+     */
+    private void writeExportRow(Row row, MaterialRecord material) {
+        Object[] values = MaterialColumns.values(mapToDTO(material, null));
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value instanceof String text) {
+                row.createCell(i).setCellValue(text);
+            } else if (value instanceof Number number) {
+                row.createCell(i).setCellValue(number.doubleValue());
+            } else if (value instanceof Boolean flag) {
+                row.createCell(i).setCellValue(flag);
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportMaterials(OutputStream outputStream, MaterialTextFormat format, MaterialExportFilter filter) {
+        try (Stream<MaterialRecord> materials = streamForExport(filter)) {
+            MaterialTextWriter writer = new MaterialTextWriter(outputStream, format);
+            int rowNum = 0;
+            Iterator<MaterialRecord> iterator = materials.iterator();
+            while (iterator.hasNext()) {
+                writer.writeRow(MaterialColumns.values(mapToDTO(iterator.next(), null)));
+                // Detach the rows written so far so the persistence context does not grow with the export
+                if (++rowNum % EXPORT_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export materials to " + format, e);
+        }
+    }
 
     @Override
     @Transactional
@@ -759,7 +712,7 @@ public class MaterialServiceImpl implements MaterialService {
                     
                     // First picture is primary only if no primary exists yet
                     picture.setIsPrimary(i == 0 && !hasPrimary);
-                    picture.setPictureData(pictureFile.getBytes());
+                    picture.setStorageKey(storePicture(pictureFile));
                     picture.setDescription("Image for " + material.getName());
                     
                     // Associate with material
@@ -771,9 +724,45 @@ public class MaterialServiceImpl implements MaterialService {
             
             // Save the material with pictures
             materialRepository.save(material);
+            incrementVersion(material);
+            publishPicturesAdded(material);
+            eventPublisher.publishEvent(new MaterialPicturesChangedEvent(materialId));
         }
     }
 
+    @Override
+    @Transactional
+    public MaterialPictureDTO attachPicture(Long materialId, StoredPicture content, String fileName,
+                                            String contentType, String description) {
+        // The content is already in the picture storage, so this transaction only writes the row
+        MaterialRecord material = materialRepository.findById(materialId)
+            .orElseThrow(() -> new RuntimeException("Material not found with id: " + materialId));
+        
+        MaterialPicture picture = new MaterialPicture();
+        picture.setMaterial(material);
+        picture.setFileName(fileName);
+        picture.setContentType(contentType);
+        picture.setFileSize(content.getSize());
+        picture.setUploadDate(LocalDateTime.now());
+        picture.setIsPrimary(materialPictureRepository.findByMaterialIdAndIsPrimaryTrue(materialId).isEmpty());
+        picture.setStorageKey(content.getKey());
+        picture.setDescription(description != null ? description : "Image for " + material.getName());
+        picture = materialPictureRepository.save(picture);
+        incrementVersion(material);
+        eventPublisher.publishEvent(new PicturesAddedEvent(List.of(picture.getStorageKey())));
+        eventPublisher.publishEvent(new MaterialPicturesChangedEvent(materialId));
+        
+        MaterialPictureDTO dto = new MaterialPictureDTO();
+        dto.setId(picture.getId());
+        dto.setFileName(picture.getFileName());
+        dto.setContentType(picture.getContentType());
+        dto.setFileSize(picture.getFileSize());
+        dto.setUploadDate(picture.getUploadDate());
+        dto.setIsPrimary(picture.getIsPrimary());
+        dto.setDescription(picture.getDescription());
+        return dto;
+    }
+
     @Override
     @Transactional
     public void removePictureFromMaterial(Long materialId, Long pictureId) {
@@ -795,6 +784,9 @@ public class MaterialServiceImpl implements MaterialService {
         // Remove the picture from the material
         material.removePicture(picture);
         materialPictureRepository.delete(picture);
+        incrementVersion(material);
+        eventPublisher.publishEvent(new PicturesRemovedEvent(List.of(picture.getStorageKey())));
+        eventPublisher.publishEvent(new MaterialPicturesChangedEvent(materialId));
         
         // If it was the primary picture, set a new primary if other pictures exist
         if (isPrimary) {
@@ -829,6 +821,8 @@ public class MaterialServiceImpl implements MaterialService {
         // Set the selected picture as primary
         picture.setIsPrimary(true);
         materialPictureRepository.save(picture);
+        incrementVersion(material);
+        eventPublisher.publishEvent(new MaterialPicturesChangedEvent(materialId));
     }
 
     @Override
@@ -839,11 +833,121 @@ public class MaterialServiceImpl implements MaterialService {
             .orElseThrow(() -> new RuntimeException("Picture not found with id: " + pictureId));
             
         // Return the binary data
-        return picture.getPictureData();
+        try (InputStream content = pictureStorage.open(picture.getStorageKey())) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read picture data", e);
+        }
+    }
+      
+    @Override
+    @Transactional(readOnly = true)
+    public PictureResource getPicture(Long pictureId, Integer size) {
+        // Only the metadata is loaded here; the bytes are streamed when the response is written
+        MaterialPicture picture = materialPictureRepository.findById(pictureId)
+            .orElseThrow(() -> new RuntimeException("Picture not found with id: " + pictureId));
+        
+        Instant lastModified = picture.getUploadDate().atZone(ZoneId.systemDefault()).toInstant();
+        String storageKey = picture.getStorageKey();
+        
+        Optional<Integer> thumbnailSize = size != null && size > 0
+            ? pictureThumbnails.findSize(storageKey, size)
+            : Optional.empty();
+        if (thumbnailSize.isPresent()) {
+            String variant = PictureThumbnails.variantName(thumbnailSize.get());
+            return new PictureResource(
+                picture.getId(),
+                thumbnailFileName(picture.getFileName(), thumbnailSize.get()),
+                "image/jpeg",
+                pictureStorage.variantSize(storageKey, variant),
+                lastModified,
+                "\"" + storageKey + "-" + variant + "\"",
+                () -> pictureStorage.openVariant(storageKey, variant));
+        }
+        
+        // The storage key is the SHA-256 of the content, so it is a strong validator
+        return new PictureResource(
+            picture.getId(),
+            picture.getFileName(),
+            picture.getContentType(),
+            picture.getFileSize(),
+            lastModified,
+            "\"" + storageKey + "\"",
+            () -> pictureStorage.open(storageKey));
+    }
+    
+    /**
+     * Helper method to name a thumbnail after its original, e.g. desk.png becomes desk-480.jpg
+     */
+    private String thumbnailFileName(String fileName, int size) {
+        String baseName = fileName == null ? "picture" : fileName.replaceFirst("\\.[^.]*$", "");
+        return baseName + "-" + size + ".jpg";
+    }
+    
+    /**
+     * Helper method to increment the version of a material whose pictures changed,
+     * since picture rows are part of its detail representation
+     */
+    private void incrementVersion(MaterialRecord material) {
+        entityManager.lock(material, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
+
+    /**
+     * Helper method to queue thumbnail generation for the material's pictures once the transaction commits
+     */
+    private void publishPicturesAdded(MaterialRecord material) {
+        List<String> storageKeys = material.getPictures().stream()
+            .map(MaterialPicture::getStorageKey)
+            .distinct()
+            .collect(Collectors.toList());
+        eventPublisher.publishEvent(new PicturesAddedEvent(storageKeys));
+    }
+    
+    /**
+     * Helper method to write an uploaded picture to the picture storage, returning its key.
+     * The content is written before the row commits, so it is released again if the transaction rolls back
+     */
+    private String storePicture(MultipartFile pictureFile) throws IOException {
+        String storageKey;
+        try (InputStream content = pictureFile.getInputStream()) {
+            storageKey = pictureStorage.store(content).getKey();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        eventPublisher.publishEvent(new PicturesRemovedEvent(List.of(storageKey)));
+                    }
+                }
+            });
+        }
+        return storageKey;
     }
       
     @Override
-    public byte[] generateExcelTemplate() {
+    public ExcelTemplate getExcelTemplate() {
+        ExcelTemplate template = excelTemplate;
+        if (template == null) {
+            synchronized (this) {
+                template = excelTemplate;
+                if (template == null) {
+                    long start = System.nanoTime();
+                    byte[] content = generateExcelTemplate();
+                    template = new ExcelTemplate(content, templateETag());
+                    excelTemplate = template;
+                    logger.info("Generated the Excel template in {} ms", (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Builds the template workbook. The allowed values come from the model
+     * enums, which only change with a new build, so this runs once per JVM.
+     */
+    private byte[] generateExcelTemplate() {
         try {
             // Create workbook and sheet
             Workbook workbook = new XSSFWorkbook();
@@ -1004,7 +1108,7 @@ public class MaterialServiceImpl implements MaterialService {
             // Desk Type validation
             CellRangeAddressList deskTypeRange = new CellRangeAddressList(1, 100, 9, 9);
             DataValidationConstraint deskTypeConstraint = validationHelper.createExplicitListConstraint(
-                    new String[] {"CORNER_DESK", "STRAIGHT_DESK"});
+                    enumNames(Desk.DeskType.class));
             DataValidation deskTypeValidation = validationHelper.createValidation(deskTypeConstraint, deskTypeRange);
             deskTypeValidation.setShowErrorBox(true);
             sheet.addValidationData(deskTypeValidation);
@@ -1012,7 +1116,7 @@ public class MaterialServiceImpl implements MaterialService {
             // Window Opening Type validation
             CellRangeAddressList windowOpeningTypeRange = new CellRangeAddressList(1, 100, 12, 12);
             DataValidationConstraint windowOpeningTypeConstraint = validationHelper.createExplicitListConstraint(
-                    new String[] {"FIXED_PANE", "TOP_HUNG", "SIDE_HUNG", "TILT", "SLIDING"});
+                    enumNames(Window.OpeningType.class));
             DataValidation windowOpeningTypeValidation = validationHelper.createValidation(windowOpeningTypeConstraint, windowOpeningTypeRange);
             windowOpeningTypeValidation.setShowErrorBox(true);
             sheet.addValidationData(windowOpeningTypeValidation);
@@ -1020,7 +1124,7 @@ public class MaterialServiceImpl implements MaterialService {
             // Cabinet Opening Type validation
             CellRangeAddressList cabinetOpeningTypeRange = new CellRangeAddressList(1, 100, 12, 12);
             DataValidationConstraint cabinetOpeningTypeConstraint = validationHelper.createExplicitListConstraint(
-                    new String[] {"DOORS", "SLIDING_DOORS", "NO_DOORS"});
+                    enumNames(OfficeCabinet.OpeningType.class));
             DataValidation cabinetOpeningTypeValidation = validationHelper.createValidation(cabinetOpeningTypeConstraint, cabinetOpeningTypeRange);
             cabinetOpeningTypeValidation.setShowErrorBox(true);
             sheet.addValidationData(cabinetOpeningTypeValidation);
@@ -1028,7 +1132,7 @@ public class MaterialServiceImpl implements MaterialService {
             // Window Hinge Side validation
             CellRangeAddressList hingeSideRange = new CellRangeAddressList(1, 100, 13, 13);
             DataValidationConstraint hingeSideConstraint = validationHelper.createExplicitListConstraint(
-                    new String[] {"RIGHT", "LEFT", "TOP", "BOTTOM", "NONE"});
+                    enumNames(Window.HingeSide.class));
             DataValidation hingeSideValidation = validationHelper.createValidation(hingeSideConstraint, hingeSideRange);
             hingeSideValidation.setShowErrorBox(true);
             sheet.addValidationData(hingeSideValidation);
@@ -1036,7 +1140,7 @@ public class MaterialServiceImpl implements MaterialService {
             // Door Swing Direction validation
             CellRangeAddressList swingDirectionRange = new CellRangeAddressList(1, 100, 15, 15);
             DataValidationConstraint swingDirectionConstraint = validationHelper.createExplicitListConstraint(
-                    new String[] {"RIGHT", "LEFT"});
+                    enumNames(Door.SwingDirection.class));
             DataValidation swingDirectionValidation = validationHelper.createValidation(swingDirectionConstraint, swingDirectionRange);
             swingDirectionValidation.setShowErrorBox(true);
             sheet.addValidationData(swingDirectionValidation);
@@ -1053,6 +1157,34 @@ public class MaterialServiceImpl implements MaterialService {
         }
     }
     
+    /**
+     * Helper method to list the constant names of an enum for a data validation
+     */
+    private static String[] enumNames(Class<? extends Enum<?>> type) {
+        return Arrays.stream(type.getEnumConstants()).map(Enum::name).toArray(String[]::new);
+    }
+
+    /**
+     * Helper method to derive the template's ETag from what it is generated
+     * from rather than from its bytes, which POI writes differently on each JVM
+     * (zip entry times), so every instance serves the same ETag.
+     */
+    private static String templateETag() {
+        StringBuilder source = new StringBuilder("template-v").append(TEMPLATE_VERSION);
+        for (Class<? extends Enum<?>> type : TEMPLATE_ENUMS) {
+            source.append('|').append(type.getName()).append('=').append(String.join(",", enumNames(type)));
+        }
+        return "\"" + TEMPLATE_VERSION + "-" + sha256Hex(source.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static String sha256Hex(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     /**
      * Helper method to add comments to cells
      */
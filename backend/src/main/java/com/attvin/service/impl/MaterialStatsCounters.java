@@ -0,0 +1,312 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialStatsDTO;
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.repository.MaterialRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live material statistics, kept in memory so the dashboard can read them
+ * without touching the database.
+ *
+ * The counters are seeded from the database once the application is ready,
+ * updated from {@link MaterialChangedEvent}s after each commit, and
+ * periodically reconciled against the database to correct any drift.
+ *
+ * A load from the database cannot tell whether a change committing at the
+ * same time is part of what it read, so applying that change's event to the
+ * loaded counters could count it twice or not at all. Changes are therefore
+ * tracked from before they commit until their transaction completes, and
+ * loaded counters are only installed when no change was in flight during
+ * the load.
+ */
+@Component
+@RequiredArgsConstructor
+public class MaterialStatsCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterialStatsCounters.class);
+
+    private static final int RECENT_DAYS = 30;
+    private static final int LOAD_ATTEMPTS = 3;
+    private static final long LOAD_WAIT_MS = 100;
+
+    private final MaterialRepository materialRepository;
+
+    private volatile Counters counters;
+
+    // Changes that reached BEFORE_COMMIT, and those whose transaction has since completed.
+    // Guarded by this, so a load can be checked and installed without a change starting in between
+    private long changesStarted;
+    private long changesFinished;
+
+    /**
+     * Returns the current statistics. This is a constant-time read of the
+     * in-memory counters; the database is only queried if they were never seeded.
+     */
+    public MaterialStatsDTO snapshot() {
+        Counters current = counters;
+        if (current != null) {
+            return current.toDTO();
+        }
+        current = loadAndInstall();
+        // Writes kept overlapping the load; its result is still correct as of the read
+        return (current != null ? current : loadCounters()).toDTO();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void seed() {
+        Counters seeded = loadAndInstall();
+        if (seeded != null) {
+            logger.info("Seeded material stats counters: {} materials", seeded.total.sum());
+        } else {
+            logger.info("Material stats counters not seeded while materials were changing; loading them on first use");
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void beforeCommit(MaterialChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Without a transaction the change is already visible and is applied right away
+            return;
+        }
+        synchronized (this) {
+            changesStarted++;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (MaterialStatsCounters.this) {
+                    changesFinished++;
+                    MaterialStatsCounters.this.notifyAll();
+                }
+            }
+        });
+    }
+
+    // Counted before MaterialChangeSequence moves the token that tags the stats
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMaterialChanged(MaterialChangedEvent event) {
+        Counters current = counters;
+        if (current == null) {
+            // Not loaded yet; the load that installs the counters will read this change
+            return;
+        }
+        if (event.getBefore() != null) {
+            current.apply(event.getBefore(), -1);
+        }
+        if (event.getAfter() != null) {
+            current.apply(event.getAfter(), 1);
+        }
+    }
+
+    /**
+     * Reloads the counters from the database and always installs the fresh
+     * ones; if the previous counters had drifted, the difference is logged.
+     * If materials keep changing during the load, the counters are left as
+     * they are until the next run.
+     */
+    @Scheduled(initialDelayString = "${material.stats.reconcile-interval-ms:600000}",
+               fixedDelayString = "${material.stats.reconcile-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        Counters previous = counters;
+        Counters fresh = loadAndInstall();
+        if (fresh == null) {
+            logger.info("Skipped material stats reconciliation while materials were changing");
+            return;
+        }
+        if (previous == null) {
+            return;
+        }
+        MaterialStatsDTO expected = fresh.toDTO();
+        MaterialStatsDTO actual = previous.toDTO();
+
+        // Recent additions are bucketed by hour, so only the exact counts are compared
+        if (!expected.getTotalCount().equals(actual.getTotalCount())
+                || !expected.getConditionCounts().equals(actual.getConditionCounts())
+                || !expected.getCategoryCounts().equals(actual.getCategoryCounts())
+                || !expected.getTypeCounts().equals(actual.getTypeCounts())) {
+            logger.warn("Material stats counters had drifted from the database (expected {}, was {})",
+                    expected, actual);
+        }
+    }
+
+    /**
+     * Computes the statistics directly from the database with aggregate
+     * queries. No MaterialRecord entities are loaded.
+     */
+    @Transactional(readOnly = true)
+    public MaterialStatsDTO loadFromDatabase() {
+        return loadCounters().toDTO();
+    }
+
+    /**
+     * Helper method to load the counters and install them, or return null if
+     * every attempt overlapped a committing change
+     */
+    private Counters loadAndInstall() {
+        for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+            long started;
+            synchronized (this) {
+                if (changesStarted != changesFinished) {
+                    // A change is committing and may or may not be part of the read
+                    try {
+                        wait(LOAD_WAIT_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                    continue;
+                }
+                started = changesStarted;
+            }
+            Counters loaded = loadCounters();
+            synchronized (this) {
+                if (changesStarted == started) {
+                    counters = loaded;
+                    return loaded;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Counters loadCounters() {
+        Counters loaded = new Counters();
+        loaded.total.add(materialRepository.count());
+        addRows(loaded.conditionCounts, materialRepository.countByCondition());
+        addRows(loaded.categoryCounts, materialRepository.countByCategory());
+        addRows(loaded.typeCounts, materialRepository.countByType());
+
+        LocalDateTime since = LocalDateTime.now().minusDays(RECENT_DAYS);
+        for (Object[] row : materialRepository.countByHourAddedAfter(since)) {
+            LocalDateTime hour = LocalDateTime.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                    ((Number) row[2]).intValue(), ((Number) row[3]).intValue(), 0);
+            loaded.recentAdditions.add(hour, ((Number) row[4]).longValue());
+        }
+        return loaded;
+    }
+
+    /**
+     * Helper method to add [key, count] aggregate rows to a counter map.
+     * Entity class keys (from TYPE(m)) are mapped to their simple name.
+     */
+    private static void addRows(ConcurrentMap<String, LongAdder> target, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            Object key = row[0];
+            String name = key instanceof Class<?> type ? type.getSimpleName() : String.valueOf(key);
+            target.computeIfAbsent(name, k -> new LongAdder()).add(((Number) row[1]).longValue());
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder total = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> conditionCounts = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> categoryCounts = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> typeCounts = new ConcurrentHashMap<>();
+        private final RecentAdditions recentAdditions = new RecentAdditions();
+
+        void apply(MaterialChangedEvent.Snapshot snapshot, long delta) {
+            total.add(delta);
+            increment(conditionCounts, snapshot.getMaterialCondition(), delta);
+            increment(categoryCounts, snapshot.getCategory(), delta);
+            increment(typeCounts, snapshot.getMaterialType(), delta);
+            if (snapshot.getDateAdded() != null) {
+                recentAdditions.add(snapshot.getDateAdded(), delta);
+            }
+        }
+
+        MaterialStatsDTO toDTO() {
+            return MaterialStatsDTO.builder()
+                    .totalCount(total.sum())
+                    .conditionCounts(toMap(conditionCounts))
+                    .categoryCounts(toMap(categoryCounts))
+                    .typeCounts(toMap(typeCounts))
+                    .recentAdditionsCount(recentAdditions.sum())
+                    .build();
+        }
+
+        private static void increment(ConcurrentMap<String, LongAdder> counts, String key, long delta) {
+            counts.computeIfAbsent(String.valueOf(key), k -> new LongAdder()).add(delta);
+        }
+
+        private static Map<String, Long> toMap(ConcurrentMap<String, LongAdder> counts) {
+            Map<String, Long> result = new HashMap<>();
+            counts.forEach((key, adder) -> {
+                long value = adder.sum();
+                // Keys whose materials were all deleted or changed are left out, as in the GROUP BY result
+                if (value > 0) {
+                    result.put(key, value);
+                }
+            });
+            return result;
+        }
+    }
+
+    /**
+     * Ring of hourly buckets covering the last {@value #RECENT_DAYS} days.
+     * Each slot remembers which hour it holds, so stale slots are recycled
+     * on write and skipped on read.
+     */
+    private static final class RecentAdditions {
+        private static final int SLOTS = RECENT_DAYS * 24 + 1;
+
+        private final long[] hours = new long[SLOTS];
+        private final long[] counts = new long[SLOTS];
+
+        synchronized void add(LocalDateTime dateAdded, long delta) {
+            long hour = toEpochHour(dateAdded);
+            if (hour <= currentHour() - SLOTS) {
+                return;
+            }
+            int slot = (int) Math.floorMod(hour, (long) SLOTS);
+            if (hours[slot] != hour) {
+                hours[slot] = hour;
+                counts[slot] = 0;
+            }
+            counts[slot] += delta;
+        }
+
+        synchronized long sum() {
+            long oldest = currentHour() - SLOTS + 1;
+            long sum = 0;
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (hours[slot] >= oldest) {
+                    sum += counts[slot];
+                }
+            }
+            return sum;
+        }
+
+        private static long currentHour() {
+            return toEpochHour(LocalDateTime.now());
+        }
+
+        private static long toEpochHour(LocalDateTime dateTime) {
+            return dateTime.toEpochSecond(ZoneOffset.UTC) / 3600;
+        }
+    }
+}
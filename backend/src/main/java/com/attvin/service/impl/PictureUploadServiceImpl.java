@@ -0,0 +1,433 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialPictureDTO;
+import com.attvin.dto.PictureUploadDTO;
+import com.attvin.event.PicturesRemovedEvent;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import com.attvin.service.PictureUploadService;
+import com.attvin.storage.PictureStorage;
+import com.attvin.storage.StoredPicture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Chunked, resumable picture uploads.
+ *
+ * Each upload is a directory holding the partially written file and a small
+ * properties file with its metadata and the set of chunks received so far.
+ * Chunks are written at their own offset, so they may arrive in any order,
+ * be retried, or be resumed after a restart. No database transaction is open
+ * while chunks arrive; the picture row is only written by a short transaction
+ * once the upload is completed and its content is in the picture storage.
+ */
+@Service
+public class PictureUploadServiceImpl implements PictureUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PictureUploadServiceImpl.class);
+
+    private static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final String DATA_FILE = "data.part";
+    private static final String SESSION_FILE = "session.properties";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final MaterialRepository materialRepository;
+    private final MaterialService materialService;
+    private final PictureStorage pictureStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path root;
+    private final int chunkSize;
+    private final long maxSize;
+    private final Duration expiry;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public PictureUploadServiceImpl(MaterialRepository materialRepository,
+                                    MaterialService materialService,
+                                    PictureStorage pictureStorage,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${material.pictures.uploads.dir:uploads/incoming}") String uploadDir,
+                                    @Value("${material.pictures.uploads.chunk-size:1048576}") int chunkSize,
+                                    @Value("${material.pictures.uploads.max-size:52428800}") long maxSize,
+                                    @Value("${material.pictures.uploads.expiry-hours:24}") long expiryHours) throws IOException {
+        this.materialRepository = materialRepository;
+        this.materialService = materialService;
+        this.pictureStorage = pictureStorage;
+        this.eventPublisher = eventPublisher;
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+        this.expiry = Duration.ofHours(expiryHours);
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public PictureUploadDTO startUpload(Long materialId, PictureUploadDTO upload) {
+        if (!materialRepository.existsById(materialId)) {
+            throw new NoSuchElementException("Material not found with id: " + materialId);
+        }
+        if (upload.getTotalSize() == null || upload.getTotalSize() <= 0 || upload.getTotalSize() > maxSize) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxSize + " bytes");
+        }
+        if (upload.getSha256() != null && !upload.getSha256().matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 must be 64 hexadecimal characters");
+        }
+
+        UploadSession session = new UploadSession();
+        session.uploadId = UUID.randomUUID().toString();
+        session.materialId = materialId;
+        session.fileName = upload.getFileName();
+        session.contentType = upload.getContentType();
+        session.description = upload.getDescription();
+        session.totalSize = upload.getTotalSize();
+        session.sha256 = upload.getSha256() != null ? upload.getSha256().toLowerCase() : null;
+        session.chunkSize = chunkSize;
+        try {
+            Files.createDirectories(sessionDir(session.uploadId));
+            session.save(sessionDir(session.uploadId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start upload", e);
+        }
+        sessions.put(session.uploadId, session);
+        return session.toDTO();
+    }
+
+    @Override
+    public PictureUploadDTO getUpload(Long materialId, String uploadId) {
+        UploadSession session = findSession(materialId, uploadId);
+        synchronized (session) {
+            return session.toDTO();
+        }
+    }
+
+    @Override
+    public PictureUploadDTO writeChunk(Long materialId, String uploadId, int index, String sha256, InputStream content) {
+        UploadSession session = findSession(materialId, uploadId);
+        if (index < 0 || index >= session.chunkCount()) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (session.chunkCount() - 1));
+        }
+        long offset = (long) index * session.chunkSize;
+        long expectedSize = Math.min(session.chunkSize, session.totalSize - offset);
+
+        // A chunk counts as received only once its bytes are checked, so a rewrite that fails
+        // part way leaves it missing rather than passing off the half-overwritten range as valid
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalStateException("Upload " + uploadId + " is being completed");
+            }
+            if (session.writing.get(index)) {
+                throw new IllegalStateException("Chunk " + index + " of upload " + uploadId + " is already being written");
+            }
+            session.writing.set(index);
+            if (session.received.get(index)) {
+                session.received.clear(index);
+                saveSession(session, "Failed to record chunk " + index + " of upload " + uploadId);
+            }
+        }
+
+        try {
+            // Chunks cover disjoint ranges of the file, so they can be written concurrently
+            MessageDigest digest = sha256Digest();
+            long written = 0;
+            try (FileChannel channel = FileChannel.open(sessionDir(uploadId).resolve(DATA_FILE),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    if (written + read > expectedSize) {
+                        throw new IllegalArgumentException("Chunk " + index + " must be " + expectedSize + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes, offset + written + bytes.position());
+                    }
+                    written += read;
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write chunk " + index + " of upload " + uploadId, e);
+            }
+
+            if (written != expectedSize) {
+                throw new IllegalArgumentException("Chunk " + index + " must be " + expectedSize + " bytes, got " + written);
+            }
+            if (sha256 != null && !sha256.equalsIgnoreCase(HexFormat.of().formatHex(digest.digest()))) {
+                throw new IllegalArgumentException("Checksum mismatch for chunk " + index);
+            }
+
+            synchronized (session) {
+                session.received.set(index);
+                session.lastModified = Instant.now();
+                saveSession(session, "Failed to record chunk " + index + " of upload " + uploadId);
+                return session.toDTO();
+            }
+        } finally {
+            synchronized (session) {
+                session.writing.clear(index);
+            }
+        }
+    }
+
+    @Override
+    public MaterialPictureDTO completeUpload(Long materialId, String uploadId) {
+        UploadSession session = findSession(materialId, uploadId);
+        Path data = sessionDir(uploadId).resolve(DATA_FILE);
+
+        // Claims the upload, so no chunk is rewritten and no second completion starts while
+        // its content is stored and attached
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalStateException("Upload " + uploadId + " is already being completed");
+            }
+            int missing = session.chunkCount() - session.received.cardinality();
+            if (missing > 0) {
+                throw new IllegalStateException("Upload " + uploadId + " is missing " + missing + " chunks");
+            }
+            if (!session.writing.isEmpty()) {
+                throw new IllegalStateException("Upload " + uploadId + " still has chunks being written");
+            }
+            session.completing = true;
+        }
+
+        MaterialPictureDTO picture;
+        try {
+            MessageDigest digest = sha256Digest();
+            StoredPicture stored;
+            try (InputStream content = new DigestInputStream(Files.newInputStream(data), digest)) {
+                stored = pictureStorage.store(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to store upload " + uploadId, e);
+            }
+            if (session.sha256 != null && !session.sha256.equals(HexFormat.of().formatHex(digest.digest()))) {
+                // Removes the stored content again unless an existing picture shares it
+                eventPublisher.publishEvent(new PicturesRemovedEvent(List.of(stored.getKey())));
+                throw new IllegalArgumentException("Checksum mismatch for upload " + uploadId);
+            }
+
+            try {
+                picture = materialService.attachPicture(materialId, stored, session.fileName, session.contentType,
+                        session.description);
+            } catch (RuntimeException e) {
+                eventPublisher.publishEvent(new PicturesRemovedEvent(List.of(stored.getKey())));
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            // Lets the client fix the upload and complete it again
+            synchronized (session) {
+                session.completing = false;
+            }
+            throw e;
+        }
+        deleteSession(uploadId);
+        return picture;
+    }
+
+    @Override
+    public void cancelUpload(Long materialId, String uploadId) {
+        UploadSession session = findSession(materialId, uploadId);
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalStateException("Upload " + uploadId + " is being completed");
+            }
+        }
+        deleteSession(uploadId);
+    }
+
+    /**
+     * Deletes uploads that have not received a chunk within the expiry period.
+     */
+    @Scheduled(fixedDelayString = "${material.pictures.uploads.cleanup-interval-ms:3600000}")
+    public void deleteExpiredUploads() {
+        Instant cutoff = Instant.now().minus(expiry);
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+            for (Path dir : dirs) {
+                String uploadId = dir.getFileName().toString();
+                UploadSession session = loadSession(uploadId);
+                if (session == null || session.lastModified.isBefore(cutoff)) {
+                    logger.info("Deleting expired picture upload {}", uploadId);
+                    deleteSession(uploadId);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to clean up expired picture uploads", e);
+        }
+    }
+
+    /**
+     * Helper method to look up an upload, reading it from disk if it was started before a restart
+     */
+    private UploadSession findSession(Long materialId, String uploadId) {
+        UploadSession session = UPLOAD_ID_PATTERN.matcher(String.valueOf(uploadId)).matches()
+                ? sessions.computeIfAbsent(uploadId, this::loadSession)
+                : null;
+        if (session == null || !session.materialId.equals(materialId)) {
+            throw new NoSuchElementException("Upload not found with id: " + uploadId);
+        }
+        return session;
+    }
+
+    private UploadSession loadSession(String uploadId) {
+        Path file = sessionDir(uploadId).resolve(SESSION_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return UploadSession.load(uploadId, file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable picture upload {}", uploadId, e);
+            return null;
+        }
+    }
+
+    private void saveSession(UploadSession session, String failure) {
+        try {
+            session.save(sessionDir(session.uploadId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(failure, e);
+        }
+    }
+
+    private void deleteSession(String uploadId) {
+        sessions.remove(uploadId);
+        try (Stream<Path> files = Files.walk(sessionDir(uploadId))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete picture upload {}", uploadId, e);
+        }
+    }
+
+    private Path sessionDir(String uploadId) {
+        return root.resolve(uploadId);
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class UploadSession {
+        private String uploadId;
+        private Long materialId;
+        private String fileName;
+        private String contentType;
+        private String description;
+        private long totalSize;
+        private String sha256;
+        private int chunkSize;
+        private Instant lastModified = Instant.now();
+        private final BitSet received = new BitSet();
+        // In-memory only: a restart ends any write or completion in progress
+        private final BitSet writing = new BitSet();
+        private boolean completing;
+
+        int chunkCount() {
+            return (int) ((totalSize + chunkSize - 1) / chunkSize);
+        }
+
+        PictureUploadDTO toDTO() {
+            PictureUploadDTO dto = new PictureUploadDTO();
+            dto.setUploadId(uploadId);
+            dto.setMaterialId(materialId);
+            dto.setFileName(fileName);
+            dto.setContentType(contentType);
+            dto.setDescription(description);
+            dto.setTotalSize(totalSize);
+            dto.setSha256(sha256);
+            dto.setChunkSize(chunkSize);
+            dto.setChunkCount(chunkCount());
+            List<Integer> chunks = new ArrayList<>();
+            received.stream().forEach(chunks::add);
+            dto.setReceivedChunks(chunks);
+            return dto;
+        }
+
+        /**
+         * Writes the session next to a temporary name and moves it into place,
+         * so a crash never leaves a half-written session file.
+         */
+        void save(Path dir) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("materialId", String.valueOf(materialId));
+            properties.setProperty("totalSize", String.valueOf(totalSize));
+            properties.setProperty("chunkSize", String.valueOf(chunkSize));
+            properties.setProperty("lastModified", lastModified.toString());
+            properties.setProperty("received", Base64.getEncoder().encodeToString(received.toByteArray()));
+            setIfPresent(properties, "fileName", fileName);
+            setIfPresent(properties, "contentType", contentType);
+            setIfPresent(properties, "description", description);
+            setIfPresent(properties, "sha256", sha256);
+
+            Path temp = dir.resolve(SESSION_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, dir.resolve(SESSION_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        static UploadSession load(String uploadId, Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            UploadSession session = new UploadSession();
+            session.uploadId = uploadId;
+            session.materialId = Long.valueOf(properties.getProperty("materialId"));
+            session.totalSize = Long.parseLong(properties.getProperty("totalSize"));
+            session.chunkSize = Integer.parseInt(properties.getProperty("chunkSize"));
+            session.lastModified = Instant.parse(properties.getProperty("lastModified"));
+            session.received.or(BitSet.valueOf(Base64.getDecoder().decode(properties.getProperty("received"))));
+            session.fileName = properties.getProperty("fileName");
+            session.contentType = properties.getProperty("contentType");
+            session.description = properties.getProperty("description");
+            session.sha256 = properties.getProperty("sha256");
+            return session;
+        }
+
+        private static void setIfPresent(Properties properties, String key, String value) {
+            if (value != null) {
+                properties.setProperty(key, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.attvin.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed picture store on the local file system.
+ *
+ * Each picture is saved under the hex SHA-256 of its bytes, fanned out into
+ * two directory levels (ab/cd/abcd...). Uploads are written to a temporary
+ * file, flushed to disk and then renamed into place, so readers never see a
+ * partial file. Identical uploads resolve to the same file.
+ *
+ * Variants such as thumbnails are written next to the original as
+ * {@code <key>-<variant>} and are deleted together with it.
+ *
+ * Storing and deleting the same key are serialized. Storing content that
+ * already exists refreshes its modification time, which is what
+ * {@link #deleteIfStoredBefore} checks, so content that was just handed out
+ * again is not deleted before the new reference to it is committed.
+ */
+@Component
+@ConditionalOnProperty(name = "material.pictures.storage", havingValue = "local", matchIfMissing = true)
+public class LocalDiskPictureStorage implements PictureStorage {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern VARIANT_PATTERN = Pattern.compile("[a-z0-9]{1,32}");
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final Path tempDir;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public LocalDiskPictureStorage(@Value("${material.pictures.storage-dir:uploads}") String storageDir) throws IOException {
+        this.root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.tempDir = root.resolve("tmp");
+        Files.createDirectories(tempDir);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public StoredPicture store(InputStream content) throws IOException {
+        Path temp = Files.createTempFile(tempDir, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size = writeDurably(new DigestInputStream(content, digest), temp);
+
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = resolve(key);
+            synchronized (lockFor(key)) {
+                if (Files.exists(target)) {
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                } else {
+                    Files.createDirectories(target.getParent());
+                    // Another instance sharing the directory may win the rename; its content is the same
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return new StoredPicture(key, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path original = resolve(key);
+        synchronized (lockFor(key)) {
+            try (DirectoryStream<Path> variants = Files.newDirectoryStream(original.getParent(), key + "-*")) {
+                for (Path variant : variants) {
+                    Files.deleteIfExists(variant);
+                }
+            } catch (NoSuchFileException e) {
+                // Nothing was ever stored in this directory
+            }
+            Files.deleteIfExists(original);
+        }
+    }
+
+    @Override
+    public boolean deleteIfStoredBefore(String key, Instant cutoff) throws IOException {
+        Path original = resolve(key);
+        synchronized (lockFor(key)) {
+            try {
+                if (!Files.getLastModifiedTime(original).toInstant().isBefore(cutoff)) {
+                    return false;
+                }
+            } catch (NoSuchFileException e) {
+                // Still removes variants left behind by an earlier failed delete
+            }
+            delete(key);
+            return true;
+        }
+    }
+
+    @Override
+    public void storeVariant(String key, String variant, InputStream content) throws IOException {
+        Path target = resolveVariant(key, variant);
+        Path temp = Files.createTempFile(tempDir, "variant-", ".part");
+        try {
+            writeDurably(content, temp);
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream openVariant(String key, String variant) throws IOException {
+        return Files.newInputStream(resolveVariant(key, variant));
+    }
+
+    @Override
+    public long variantSize(String key, String variant) {
+        try {
+            return Files.size(resolveVariant(key, variant));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Copies the stream to the file and forces it to disk before returning the byte count.
+     */
+    private static long writeDurably(InputStream content, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             OutputStream out = Channels.newOutputStream(channel)) {
+            long size = content.transferTo(out);
+            channel.force(true);
+            return size;
+        }
+    }
+
+    private Path resolveVariant(String key, String variant) {
+        if (variant == null || !VARIANT_PATTERN.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Invalid picture variant: " + variant);
+        }
+        Path original = resolve(key);
+        return original.resolveSibling(key + "-" + variant);
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+
+    private Path resolve(String key) {
+        // Keys are used as file names, so anything but a SHA-256 hex string is rejected
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid picture storage key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
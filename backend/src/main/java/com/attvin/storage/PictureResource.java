@@ -0,0 +1,77 @@
+package com.attvin.storage;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * A stored picture exposed as a Spring Resource. The content length and
+ * validators come from the picture metadata, so Spring MVC can answer
+ * Range and conditional requests without reading the content. The content
+ * itself is only opened when the response body is written.
+ */
+public class PictureResource extends AbstractResource {
+
+    private final Long pictureId;
+    private final String fileName;
+    private final String contentType;
+    private final long contentLength;
+    private final Instant lastModified;
+    private final String eTag;
+    private final InputStreamSource content;
+
+    public PictureResource(Long pictureId, String fileName, String contentType, long contentLength,
+                           Instant lastModified, String eTag, InputStreamSource content) {
+        this.pictureId = pictureId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.content = content;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return content.getInputStream();
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified.toEpochMilli();
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Picture " + pictureId + " [" + fileName + "]";
+    }
+
+    public Long getPictureId() {
+        return pictureId;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+}
@@ -0,0 +1,46 @@
+package com.attvin.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Stores picture content by key. Implementations must be safe for
+ * concurrent use; the local disk store is content addressed, so storing
+ * the same bytes twice returns the same key and keeps one copy.
+ */
+public interface PictureStorage {
+
+    /**
+     * Stores the content of the stream (which is not closed) and returns its key.
+     */
+    StoredPicture store(InputStream content) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    boolean exists(String key);
+
+    /**
+     * Removes the content for the key, including its variants. Missing content is ignored.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Removes the content for the key like {@link #delete}, unless it was
+     * stored again at or after the cutoff. Returns false if it was kept.
+     */
+    boolean deleteIfStoredBefore(String key, Instant cutoff) throws IOException;
+
+    /**
+     * Stores a derived version of the content with the given key, such as a
+     * thumbnail. The variant name must be lower-case letters and digits.
+     */
+    void storeVariant(String key, String variant, InputStream content) throws IOException;
+
+    InputStream openVariant(String key, String variant) throws IOException;
+
+    /**
+     * Returns the size in bytes of a stored variant, or -1 if it does not exist.
+     */
+    long variantSize(String key, String variant);
+}
@@ -0,0 +1,233 @@
+package com.attvin.storage;
+
+import com.attvin.event.PicturesAddedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Generates downscaled JPEG versions of stored pictures so lists and cards do
+ * not have to download the originals.
+ *
+ * Thumbnails are fitted into a square of each standard size and are never
+ * upscaled. They are generated on a bounded background executor after the
+ * upload commits, and lazily for older pictures the first time one is asked
+ * for. The smallest size is always written, even when the original already
+ * fits, so its presence marks a picture as processed.
+ */
+@Component
+public class PictureThumbnails {
+
+    private static final Logger logger = LoggerFactory.getLogger(PictureThumbnails.class);
+
+    /** Standard thumbnail sizes in pixels, smallest first */
+    public static final int[] SIZES = {160, 480, 1280};
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final PictureStorage pictureStorage;
+    private final Executor executor;
+
+    // Keys queued or being processed, so repeated requests do not queue duplicate work
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Keys whose content could not be decoded; not retried until restart
+    private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+
+    public PictureThumbnails(PictureStorage pictureStorage,
+                             @Qualifier("thumbnailExecutor") Executor executor) {
+        this.pictureStorage = pictureStorage;
+        this.executor = executor;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPicturesAdded(PicturesAddedEvent event) {
+        event.getStorageKeys().forEach(this::enqueue);
+    }
+
+    /**
+     * Returns the smallest stored thumbnail size that is at least the requested
+     * size. If the picture was never processed, generation is queued and
+     * nothing is returned so the caller can fall back to the original.
+     */
+    public Optional<Integer> findSize(String key, int requestedSize) {
+        if (pictureStorage.variantSize(key, variantName(SIZES[0])) < 0) {
+            enqueue(key);
+            return Optional.empty();
+        }
+        for (int size : SIZES) {
+            if (size >= requestedSize && pictureStorage.variantSize(key, variantName(size)) >= 0) {
+                return Optional.of(size);
+            }
+        }
+        // Larger than every thumbnail, or the original is smaller than the requested size
+        return Optional.empty();
+    }
+
+    public static String variantName(int size) {
+        return "w" + size;
+    }
+
+    /**
+     * Queues thumbnail generation for a key. When the queue is full the work is
+     * dropped; it is queued again the next time a thumbnail is requested.
+     */
+    public void enqueue(String key) {
+        if (unsupported.contains(key) || !pending.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(key);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            logger.debug("Thumbnail queue is full, skipping picture {}", key);
+        }
+    }
+
+    /**
+     * Decodes the picture once and writes every thumbnail size, largest first,
+     * each downscaled from the previous one.
+     */
+    void generate(String key) {
+        if (pictureStorage.variantSize(key, variantName(SIZES[0])) >= 0) {
+            // Already processed, e.g. an identical picture uploaded earlier
+            return;
+        }
+        try {
+            BufferedImage image = read(key, SIZES[SIZES.length - 1]);
+            if (image == null) {
+                unsupported.add(key);
+                logger.debug("No image reader for picture {}, skipping thumbnails", key);
+                return;
+            }
+            for (int i = SIZES.length - 1; i >= 0; i--) {
+                int size = SIZES[i];
+                boolean fits = Math.max(image.getWidth(), image.getHeight()) <= size;
+                if (fits && i > 0) {
+                    continue;
+                }
+                if (!fits) {
+                    image = fitInto(image, size);
+                }
+                pictureStorage.storeVariant(key, variantName(size), new ByteArrayInputStream(encodeJpeg(image)));
+            }
+        } catch (IOException | RuntimeException e) {
+            unsupported.add(key);
+            logger.warn("Failed to generate thumbnails for picture {}", key, e);
+        }
+    }
+
+    /**
+     * Helper method to decode a picture, subsampling on read so that very large
+     * originals are never fully decoded when only a thumbnail is needed.
+     * Returns null if no ImageIO reader understands the content.
+     */
+    private BufferedImage read(String key, int largestSize) throws IOException {
+        try (InputStream content = pictureStorage.open(key);
+             ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longestEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Keep at least twice the largest size so the final downscale stays smooth
+                int subsampling = Math.max(1, longestEdge / (largestSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Helper method to scale an image down to fit a square of the given size,
+     * halving in steps to avoid the aliasing of a single bilinear pass.
+     */
+    private static BufferedImage fitInto(BufferedImage source, int size) {
+        double scale = (double) size / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Helper method to draw an image at a new size onto an opaque RGB canvas.
+     * Transparent areas become white, as JPEG has no alpha channel.
+     */
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            image = draw(image, image.getWidth(), image.getHeight());
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
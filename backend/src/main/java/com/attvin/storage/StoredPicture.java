@@ -0,0 +1,12 @@
+package com.attvin.storage;
+
+import lombok.Value;
+
+/**
+ * Result of storing picture content: the key to read it back with and its size in bytes.
+ */
+@Value
+public class StoredPicture {
+    String key;
+    long size;
+}
@@ -0,0 +1,82 @@
+package com.attvin.storage;
+
+import com.attvin.event.PicturesRemovedEvent;
+import com.attvin.repository.MaterialPictureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletes stored picture content once no picture references it any more.
+ * Content is shared between identical uploads, so a key is only deleted
+ * after checking that the last referencing row is gone.
+ *
+ * Content is stored before the row that references it is committed, so an
+ * upload of identical bytes may be about to reference a key that has no row
+ * yet. Content stored within the grace period is therefore kept, and looked
+ * at again once the grace period has passed.
+ */
+@Component
+public class UnreferencedPictureCleaner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreferencedPictureCleaner.class);
+
+    private final MaterialPictureRepository materialPictureRepository;
+    private final PictureStorage pictureStorage;
+    private final Duration gracePeriod;
+
+    // Keys kept because they were stored recently, with the time to look at them again
+    private final Map<String, Instant> deferred = new ConcurrentHashMap<>();
+
+    public UnreferencedPictureCleaner(MaterialPictureRepository materialPictureRepository,
+                                      PictureStorage pictureStorage,
+                                      @Value("${material.pictures.cleanup.grace-minutes:10}") long graceMinutes) {
+        this.materialPictureRepository = materialPictureRepository;
+        this.pictureStorage = pictureStorage;
+        this.gracePeriod = Duration.ofMinutes(graceMinutes);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPicturesRemoved(PicturesRemovedEvent event) {
+        for (String key : event.getStorageKeys()) {
+            deleteIfUnreferenced(key);
+        }
+    }
+
+    /**
+     * Retries the keys that were kept because they had been stored again recently.
+     */
+    @Scheduled(fixedDelayString = "${material.pictures.cleanup.interval-ms:60000}")
+    public void deleteDeferred() {
+        Instant now = Instant.now();
+        deferred.forEach((key, due) -> {
+            if (!due.isAfter(now) && deferred.remove(key, due)) {
+                deleteIfUnreferenced(key);
+            }
+        });
+    }
+
+    private void deleteIfUnreferenced(String key) {
+        if (materialPictureRepository.existsByStorageKey(key)) {
+            return;
+        }
+        try {
+            Instant now = Instant.now();
+            if (!pictureStorage.deleteIfStoredBefore(key, now.minus(gracePeriod))) {
+                deferred.put(key, now.plus(gracePeriod));
+            }
+        } catch (IOException e) {
+            // Leftover content is harmless; it is reused if the same picture is uploaded again
+            logger.warn("Failed to delete picture content {}", key, e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+-- The original schema, as Hibernate generated it (ddl-auto=update) before
+-- any of the later migrations. Existing databases are baselined at this
+-- version and skip it; the following migrations bring them up to date.
+
+CREATE TABLE users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    email VARCHAR(255) NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+) ENGINE=InnoDB;
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL,
+    role ENUM('ADMIN', 'USER', 'VIEWER'),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE material_records (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    material_type VARCHAR(31) NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    category VARCHAR(255) NOT NULL,
+    material_condition VARCHAR(255) NOT NULL,
+    color VARCHAR(255) NOT NULL,
+    notes VARCHAR(255),
+    date_added DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE windows (
+    id BIGINT NOT NULL,
+    width FLOAT(53) NOT NULL,
+    height FLOAT(53) NOT NULL,
+    u_value FLOAT(53),
+    opening_type ENUM('FIXED_PANE', 'SIDE_HUNG', 'SLIDING', 'TILT', 'TOP_HUNG') NOT NULL,
+    hinge_side ENUM('BOTTOM', 'LEFT', 'NONE', 'RIGHT', 'TOP'),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_windows_material FOREIGN KEY (id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE doors (
+    id BIGINT NOT NULL,
+    width FLOAT(53) NOT NULL,
+    height FLOAT(53) NOT NULL,
+    u_value FLOAT(53),
+    swing_direction ENUM('LEFT', 'RIGHT') NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_doors_material FOREIGN KEY (id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE desks (
+    id BIGINT NOT NULL,
+    width FLOAT(53) NOT NULL,
+    depth FLOAT(53) NOT NULL,
+    desk_type ENUM('CORNER_DESK', 'STRAIGHT_DESK') NOT NULL,
+    height_adjustable BIT NOT NULL,
+    maximum_height FLOAT(53) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_desks_material FOREIGN KEY (id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE drawer_units (
+    id BIGINT NOT NULL,
+    width FLOAT(53) NOT NULL,
+    height FLOAT(53) NOT NULL,
+    depth FLOAT(53) NOT NULL,
+    has_wheels BIT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_drawer_units_material FOREIGN KEY (id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE office_cabinets (
+    id BIGINT NOT NULL,
+    width FLOAT(53) NOT NULL,
+    height FLOAT(53) NOT NULL,
+    depth FLOAT(53) NOT NULL,
+    opening_type ENUM('DOORS', 'NO_DOORS', 'SLIDING_DOORS') NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_office_cabinets_material FOREIGN KEY (id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE material_pictures (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    material_id BIGINT NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(255) NOT NULL,
+    file_size BIGINT NOT NULL,
+    picture_data LONGBLOB NOT NULL,
+    upload_date DATETIME(6) NOT NULL,
+    is_primary BIT NOT NULL,
+    description VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_material_pictures_material FOREIGN KEY (material_id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE audit_trails (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    material_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    user_name VARCHAR(255) NOT NULL,
+    action ENUM('CREATED', 'DELETED', 'UPDATED') NOT NULL,
+    details VARCHAR(255) NOT NULL,
+    timestamp DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_audit_trails_material FOREIGN KEY (material_id) REFERENCES material_records (id)
+) ENGINE=InnoDB;
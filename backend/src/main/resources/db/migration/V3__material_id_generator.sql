@@ -0,0 +1,12 @@
+-- Material IDs come from a pooled table generator instead of the identity
+-- column, so imports can batch their inserts. A stored value V hands out the
+-- block [V - 49, V], so the generator starts at the highest existing ID plus
+-- the allocation size (MaterialRecord.ID_ALLOCATION_SIZE).
+CREATE TABLE id_generators (
+    sequence_name VARCHAR(255) NOT NULL,
+    next_val BIGINT,
+    PRIMARY KEY (sequence_name)
+) ENGINE=InnoDB;
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'material_records', COALESCE(MAX(id), 0) + 50 FROM material_records;
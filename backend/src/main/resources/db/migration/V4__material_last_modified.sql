@@ -0,0 +1,7 @@
+-- Incremental exports filter on last_modified. Materials stored before the
+-- column existed count as modified when they were added.
+ALTER TABLE material_records ADD COLUMN last_modified DATETIME(6);
+
+UPDATE material_records SET last_modified = date_added;
+
+CREATE INDEX idx_material_records_last_modified ON material_records (last_modified);
@@ -0,0 +1,3 @@
+-- Keyset pagination of the cursor listing, in NEWEST and NAME order
+CREATE INDEX idx_material_records_date_added_id ON material_records (date_added, id);
+CREATE INDEX idx_material_records_name_id ON material_records (name, id);
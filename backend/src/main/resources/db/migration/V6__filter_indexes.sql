@@ -0,0 +1,11 @@
+-- Indexes for the material filters: search, export, cursor listing and the
+-- stats GROUP BY queries. Each ends in (date_added, id), so a filtered
+-- listing in NEWEST order is a single range scan read in index order.
+-- TYPE(m) filters compare the discriminator column material_type.
+CREATE INDEX idx_material_records_category ON material_records (category, date_added, id);
+CREATE INDEX idx_material_records_condition ON material_records (material_condition, date_added, id);
+CREATE INDEX idx_material_records_type ON material_records (material_type, date_added, id);
+
+-- AuditTrailRepository: all entries and one user's entries, newest first
+CREATE INDEX idx_audit_trails_timestamp ON audit_trails (timestamp);
+CREATE INDEX idx_audit_trails_user_timestamp ON audit_trails (user_id, timestamp);
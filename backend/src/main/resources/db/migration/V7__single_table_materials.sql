@@ -0,0 +1,63 @@
+-- Moves the material hierarchy from one table per type (JOINED) into
+-- material_records (SINGLE_TABLE). Columns that several types share, such as
+-- width, are merged; each type's opening_type gets its own column because the
+-- allowed values differ. Type-specific columns are nullable: a row only fills
+-- those of its own material_type.
+
+ALTER TABLE material_records ADD (
+    width FLOAT(53),
+    height FLOAT(53),
+    depth FLOAT(53),
+    u_value FLOAT(53),
+    window_opening_type ENUM('FIXED_PANE', 'SIDE_HUNG', 'SLIDING', 'TILT', 'TOP_HUNG'),
+    hinge_side ENUM('BOTTOM', 'LEFT', 'NONE', 'RIGHT', 'TOP'),
+    swing_direction ENUM('LEFT', 'RIGHT'),
+    desk_type ENUM('CORNER_DESK', 'STRAIGHT_DESK'),
+    height_adjustable BIT,
+    maximum_height FLOAT(53),
+    has_wheels BIT,
+    cabinet_opening_type ENUM('DOORS', 'NO_DOORS', 'SLIDING_DOORS')
+);
+
+UPDATE material_records SET
+    width = (SELECT t.width FROM windows t WHERE t.id = material_records.id),
+    height = (SELECT t.height FROM windows t WHERE t.id = material_records.id),
+    u_value = (SELECT t.u_value FROM windows t WHERE t.id = material_records.id),
+    window_opening_type = (SELECT t.opening_type FROM windows t WHERE t.id = material_records.id),
+    hinge_side = (SELECT t.hinge_side FROM windows t WHERE t.id = material_records.id)
+WHERE material_type = 'WINDOW';
+
+UPDATE material_records SET
+    width = (SELECT t.width FROM doors t WHERE t.id = material_records.id),
+    height = (SELECT t.height FROM doors t WHERE t.id = material_records.id),
+    u_value = (SELECT t.u_value FROM doors t WHERE t.id = material_records.id),
+    swing_direction = (SELECT t.swing_direction FROM doors t WHERE t.id = material_records.id)
+WHERE material_type = 'DOOR';
+
+UPDATE material_records SET
+    width = (SELECT t.width FROM desks t WHERE t.id = material_records.id),
+    depth = (SELECT t.depth FROM desks t WHERE t.id = material_records.id),
+    desk_type = (SELECT t.desk_type FROM desks t WHERE t.id = material_records.id),
+    height_adjustable = (SELECT t.height_adjustable FROM desks t WHERE t.id = material_records.id),
+    maximum_height = (SELECT t.maximum_height FROM desks t WHERE t.id = material_records.id)
+WHERE material_type = 'DESK';
+
+UPDATE material_records SET
+    width = (SELECT t.width FROM drawer_units t WHERE t.id = material_records.id),
+    height = (SELECT t.height FROM drawer_units t WHERE t.id = material_records.id),
+    depth = (SELECT t.depth FROM drawer_units t WHERE t.id = material_records.id),
+    has_wheels = (SELECT t.has_wheels FROM drawer_units t WHERE t.id = material_records.id)
+WHERE material_type = 'DRAWER_UNIT';
+
+UPDATE material_records SET
+    width = (SELECT t.width FROM office_cabinets t WHERE t.id = material_records.id),
+    height = (SELECT t.height FROM office_cabinets t WHERE t.id = material_records.id),
+    depth = (SELECT t.depth FROM office_cabinets t WHERE t.id = material_records.id),
+    cabinet_opening_type = (SELECT t.opening_type FROM office_cabinets t WHERE t.id = material_records.id)
+WHERE material_type = 'OFFICE_CABINET';
+
+DROP TABLE windows;
+DROP TABLE doors;
+DROP TABLE desks;
+DROP TABLE drawer_units;
+DROP TABLE office_cabinets;
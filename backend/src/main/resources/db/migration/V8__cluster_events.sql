@@ -0,0 +1,12 @@
+-- Outbox of material events for the other instances (material.cluster.bus=outbox).
+-- Rows are written in the transaction of the change and polled by created_at.
+CREATE TABLE cluster_events (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    origin VARCHAR(36) NOT NULL,
+    event_type VARCHAR(100) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_cluster_events_created_at ON cluster_events (created_at);
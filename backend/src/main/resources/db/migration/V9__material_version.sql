@@ -0,0 +1,2 @@
+-- Optimistic-lock version of each material, used as the ETag of the detail endpoint
+ALTER TABLE material_records ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,135 @@
+package com.attvin.cluster;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.search.MaterialSearchIndex;
+import com.attvin.service.MaterialService;
+import com.attvin.service.impl.MaterialStatsCounters;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Plays a second instance by writing to the shared database and the outbox
+ * directly, then checks that this instance's caches follow after a poll.
+ * Not transactional: outbox rows are only visible once committed.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cluster;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.flyway.enabled=true",
+        "spring.jpa.generate-ddl=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+        "material.cluster.bus=outbox",
+        "material.cluster.poll-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+class OutboxClusterEventBusTest {
+
+    private static final String OTHER_INSTANCE = "other-instance";
+
+    @Autowired
+    private OutboxClusterEventBus clusterEventBus;
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialSearchIndex searchIndex;
+
+    @Autowired
+    private MaterialStatsCounters statsCounters;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void appliesChangesCommittedByAnotherInstance() throws Exception {
+        Long id = materialService.createMaterial(door("Shared Door", "Cluster Before"), null).getId();
+        assertEquals(List.of("MaterialChangedEvent"), jdbcTemplate.queryForList(
+                "SELECT event_type FROM cluster_events WHERE origin = ?", String.class, clusterEventBus.getOrigin()));
+
+        // Warm the detail cache, then let the other instance rename and move the material
+        assertEquals("Shared Door", materialService.getMaterialById(id).getName());
+        MaterialChangedEvent.Snapshot before = new MaterialChangedEvent.Snapshot(id, "Shared Door", null, "White",
+                "Cluster Before", "Door", "Reusable", null);
+        MaterialChangedEvent.Snapshot after = new MaterialChangedEvent.Snapshot(id, "Relocated Door", null, "White",
+                "Cluster After", "Door", "Reusable", null);
+        jdbcTemplate.update("UPDATE material_records SET name = ?, category = ? WHERE id = ?",
+                "Relocated Door", "Cluster After", id);
+        jdbcTemplate.update(
+                "INSERT INTO cluster_events (origin, event_type, payload, created_at) VALUES (?, ?, ?, ?)",
+                OTHER_INSTANCE, "MaterialChangedEvent",
+                objectMapper.writeValueAsString(new MaterialChangedEvent(id, MaterialChangedEvent.ChangeType.UPDATED,
+                        before, after)),
+                Timestamp.from(Instant.now()));
+        int rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cluster_events", Integer.class);
+
+        clusterEventBus.poll();
+        clusterEventBus.poll();
+
+        assertEquals("Relocated Door", materialService.getMaterialById(id).getName());
+        assertEquals(List.of(id), searchIndex.search("relocated", null, null, null, 0, 10).getMaterialIds());
+        assertEquals(1L, statsCounters.snapshot().getCategoryCounts().get("Cluster After"),
+                "The change must be applied exactly once");
+        assertNull(statsCounters.snapshot().getCategoryCounts().get("Cluster Before"));
+        assertEquals(rows, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cluster_events", Integer.class),
+                "Replayed events must not be sent back to the cluster");
+    }
+
+    @Test
+    void writesTheEventsOfATransactionWithOneBatch() {
+        clearInvocations(jdbcTemplate);
+        transactionTemplate.executeWithoutResult(status -> {
+            materialService.createMaterial(door("Batched Door", "Cluster Batch"), null);
+            materialService.createMaterial(door("Batched Door", "Cluster Batch"), null);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            materialService.createMaterial(door("Rolled Back Door", "Cluster Batch"), null);
+            status.setRollbackOnly();
+        });
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO cluster_events"),
+                ArgumentMatchers.<List<Object[]>>argThat(rows -> rows.size() == 2));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO cluster_events"), any(Object[].class));
+        assertEquals(2, jdbcTemplate.update("DELETE FROM cluster_events WHERE payload LIKE '%Cluster Batch%'"),
+                "Only the committed events are written");
+    }
+
+    private static MaterialRecordDTO door(String name, String category) {
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName(name);
+        dto.setCategory(category);
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("LEFT");
+        return dto;
+    }
+}
@@ -0,0 +1,127 @@
+package com.attvin.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares list and search latency of the JOINED material layout (schema V6)
+ * with the single-table layout (V7) at 100k materials. The single-table
+ * database is filled in the JOINED layout and then migrated, so the V7 data
+ * migration is checked on the way. Only runs with -Pbenchmark.
+ */
+@Tag("benchmark")
+class InheritanceLayoutBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InheritanceLayoutBenchmarkTest.class);
+
+    private static final int ROWS = 100_000;
+
+    private static final String JOINED_COLUMNS = "SELECT m.*, w.width, w.height, w.u_value, w.opening_type, w.hinge_side, "
+            + "d.width, d.height, d.u_value, d.swing_direction, k.width, k.depth, k.desk_type, k.height_adjustable, "
+            + "k.maximum_height, u.width, u.height, u.depth, u.has_wheels, c.width, c.height, c.depth, c.opening_type "
+            + "FROM material_records m "
+            + "LEFT JOIN windows w ON w.id = m.id LEFT JOIN doors d ON d.id = m.id LEFT JOIN desks k ON k.id = m.id "
+            + "LEFT JOIN drawer_units u ON u.id = m.id LEFT JOIN office_cabinets c ON c.id = m.id ";
+
+    // Name -> [JOINED query, single-table query], shaped like the SQL Hibernate generates for each layout
+    private static final Map<String, List<String>> QUERIES = Map.of(
+            "list page", List.of(
+                    JOINED_COLUMNS + "ORDER BY m.date_added DESC, m.id DESC LIMIT 20",
+                    "SELECT m.* FROM material_records m ORDER BY m.date_added DESC, m.id DESC LIMIT 20"),
+            "category search", List.of(
+                    JOINED_COLUMNS + "WHERE m.category = 'Category 7' ORDER BY m.date_added DESC, m.id DESC",
+                    "SELECT m.* FROM material_records m WHERE m.category = 'Category 7' ORDER BY m.date_added DESC, m.id DESC"),
+            "find by id", List.of(
+                    JOINED_COLUMNS + "WHERE m.id = 54321",
+                    "SELECT m.* FROM material_records m WHERE m.id = 54321"));
+
+    @Test
+    void singleTableLayoutAnswersWithoutJoins() {
+        JdbcTemplate joined = database("joined", "6");
+        fillJoined(joined);
+
+        JdbcTemplate single = database("single", "6");
+        fillJoined(single);
+        long start = System.nanoTime();
+        Flyway.configure().dataSource(single.getDataSource()).load().migrate();
+        logger.info("Migrated {} materials to the single-table layout in {} ms", ROWS, (System.nanoTime() - start) / 1_000_000);
+
+        // Every type-specific value arrived in material_records
+        for (String column : List.of("width", "height", "depth", "u_value", "maximum_height")) {
+            assertEquals(sumOverSubclassTables(joined, column),
+                    single.queryForObject("SELECT COALESCE(SUM(" + column + "), 0) FROM material_records", Double.class), column);
+        }
+        assertEquals(joined.queryForObject("SELECT COUNT(*) FROM drawer_units WHERE has_wheels", Long.class),
+                single.queryForObject("SELECT COUNT(*) FROM material_records WHERE has_wheels", Long.class));
+        assertEquals(joined.queryForObject("SELECT COUNT(*) FROM office_cabinets WHERE opening_type = 'NO_DOORS'", Long.class),
+                single.queryForObject("SELECT COUNT(*) FROM material_records WHERE cabinet_opening_type = 'NO_DOORS'", Long.class));
+
+        QUERIES.forEach((name, sql) -> {
+            assertEquals(joined.queryForList(sql.get(0)).size(), single.queryForList(sql.get(1)).size(), name);
+            logger.info("{} over {} materials: JOINED {} us, single table {} us",
+                    name, ROWS, time(joined, sql.get(0)), time(single, sql.get(1)));
+        });
+    }
+
+    private static JdbcTemplate database(String name, String version) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).target(version).load().migrate();
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Helper method to insert materials of all five types, spread over 40 categories, in the JOINED layout
+     */
+    private static void fillJoined(JdbcTemplate jdbc) {
+        String numbers = "(SELECT \"X\" AS n FROM SYSTEM_RANGE(1, " + ROWS + ")) numbers";
+        jdbc.update("INSERT INTO material_records (id, material_type, name, category, material_condition, color, date_added) "
+                + "SELECT n, CASE MOD(n, 5) WHEN 0 THEN 'WINDOW' WHEN 1 THEN 'DOOR' WHEN 2 THEN 'DESK' "
+                + "WHEN 3 THEN 'DRAWER_UNIT' ELSE 'OFFICE_CABINET' END, CONCAT('Bench ', n), "
+                + "CONCAT('Category ', MOD(n, 40)), 'Reusable', 'Grey', "
+                + "DATEADD('MINUTE', n, TIMESTAMP '2024-01-01 00:00:00') FROM " + numbers);
+        jdbc.update("INSERT INTO windows (id, width, height, u_value, opening_type, hinge_side) "
+                + "SELECT id, 90, 120, 1.2, 'SIDE_HUNG', 'LEFT' FROM material_records WHERE material_type = 'WINDOW'");
+        jdbc.update("INSERT INTO doors (id, width, height, u_value, swing_direction) "
+                + "SELECT id, 90, 210, 1.8, 'RIGHT' FROM material_records WHERE material_type = 'DOOR'");
+        jdbc.update("INSERT INTO desks (id, width, depth, desk_type, height_adjustable, maximum_height) "
+                + "SELECT id, 160, 80, 'CORNER_DESK', TRUE, 120 FROM material_records WHERE material_type = 'DESK'");
+        jdbc.update("INSERT INTO drawer_units (id, width, height, depth, has_wheels) "
+                + "SELECT id, 40, 60, 45, MOD(id, 2) = 0 FROM material_records WHERE material_type = 'DRAWER_UNIT'");
+        jdbc.update("INSERT INTO office_cabinets (id, width, height, depth, opening_type) "
+                + "SELECT id, 80, 200, 45, CASEWHEN(MOD(id, 3) = 0, 'NO_DOORS', 'DOORS') "
+                + "FROM material_records WHERE material_type = 'OFFICE_CABINET'");
+        jdbc.execute("ANALYZE");
+    }
+
+    private static double sumOverSubclassTables(JdbcTemplate jdbc, String column) {
+        double sum = 0;
+        for (String table : List.of("windows", "doors", "desks", "drawer_units", "office_cabinets")) {
+            List<String> columns = jdbc.queryForList("SELECT column_name FROM information_schema.columns "
+                    + "WHERE table_name = ?", String.class, table);
+            if (columns.contains(column)) {
+                sum += jdbc.queryForObject("SELECT COALESCE(SUM(" + column + "), 0) FROM " + table, Double.class);
+            }
+        }
+        return sum;
+    }
+
+    private static long time(JdbcTemplate jdbc, String sql) {
+        jdbc.queryForList(sql); // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            jdbc.queryForList(sql);
+        }
+        return (System.nanoTime() - start) / 10_000;
+    }
+}
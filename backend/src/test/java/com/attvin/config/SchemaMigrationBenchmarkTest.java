@@ -0,0 +1,126 @@
+package com.attvin.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the application on a database built by the Flyway migrations (H2 in
+ * MySQL mode) with ddl-auto=validate, so a migration that drifts from the
+ * entity mappings fails the build. It then compares the filter queries on
+ * the baseline schema with the migrated one: every filter must be answered
+ * by an index range scan rather than a table scan.
+ *
+ * The checks run in every build on a small table; the timings are only
+ * meaningful at benchmark size, which runs with -Pbenchmark.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrated;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.flyway.enabled=true",
+        "spring.jpa.generate-ddl=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect"
+})
+@ActiveProfiles("test")
+class SchemaMigrationBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrationBenchmarkTest.class);
+
+    private static final int CHECK_ROWS = 2_000;
+    private static final int BENCHMARK_ROWS = 20_000;
+
+    // Query -> index that must answer it
+    private static final Map<String, String> FILTER_QUERIES = Map.of(
+            "SELECT id FROM material_records WHERE category = 'Category 7' ORDER BY date_added DESC, id DESC LIMIT 21",
+            "idx_material_records_category",
+            "SELECT id FROM material_records WHERE material_condition = 'Damaged' ORDER BY date_added DESC, id DESC LIMIT 21",
+            "idx_material_records_condition",
+            "SELECT id FROM material_records WHERE material_type = 'DESK' ORDER BY date_added DESC, id DESC LIMIT 21",
+            "idx_material_records_type",
+            "SELECT COUNT(*) FROM material_records WHERE category = 'Category 7' AND date_added > '2024-06-01'",
+            "idx_material_records_category",
+            "SELECT id FROM audit_trails WHERE user_id = 3 ORDER BY timestamp DESC",
+            "idx_audit_trails_user_timestamp");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void filterQueriesUseIndexRangeScans() {
+        checkFilterQueries(1_000_000, CHECK_ROWS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void filterQueriesUseIndexRangeScansOnLargeTables() {
+        checkFilterQueries(2_000_000, BENCHMARK_ROWS);
+    }
+
+    /**
+     * Helper method to add rows with IDs from firstId to both databases, then time and explain the filter queries
+     */
+    private void checkFilterQueries(int firstId, int rows) {
+        JdbcTemplate baseline = baselineDatabase();
+        fill(baseline, firstId, rows);
+        fill(jdbcTemplate, firstId, rows);
+
+        FILTER_QUERIES.forEach((sql, index) -> {
+            long baselineMicros = time(baseline, sql);
+            long migratedMicros = time(jdbcTemplate, sql);
+            String plan = explain(jdbcTemplate, sql);
+            logger.info("{} rows, baseline {} us, migrated {} us: {}", rows, baselineMicros, migratedMicros, sql);
+
+            assertTrue(plan.contains(index), "Expected " + index + " in the plan of " + sql + ":\n" + plan);
+            assertFalse(explain(baseline, sql).contains(index));
+        });
+    }
+
+    /**
+     * Helper method to create a second database with only the baseline migration applied
+     */
+    private static JdbcTemplate baselineDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:baseline;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        return new JdbcTemplate(dataSource);
+    }
+
+    private static void fill(JdbcTemplate jdbc, int firstId, int rows) {
+        // IDs start well past those the application has already used
+        String numbers = "(SELECT \"X\" AS n FROM SYSTEM_RANGE(1, " + rows + ")) numbers";
+        jdbc.update("INSERT INTO material_records (id, material_type, name, category, material_condition, color, date_added) "
+                + "SELECT " + firstId + " + n, CASEWHEN(MOD(n, 5) = 0, 'DESK', 'DRAWER_UNIT'), CONCAT('Bench ', n), "
+                + "CONCAT('Category ', MOD(n, 40)), CASEWHEN(MOD(n, 3) = 0, 'Damaged', 'Reusable'), 'Grey', "
+                + "DATEADD('MINUTE', n, TIMESTAMP '2024-01-01 00:00:00') FROM " + numbers);
+        jdbc.update("INSERT INTO audit_trails (material_id, user_id, user_name, action, details, timestamp) "
+                + "SELECT " + firstId + " + n, MOD(n, 50), 'bench', 'CREATED', 'Created', "
+                + "DATEADD('MINUTE', n, TIMESTAMP '2024-01-01 00:00:00') FROM " + numbers);
+        jdbc.execute("ANALYZE");
+    }
+
+    private static long time(JdbcTemplate jdbc, String sql) {
+        jdbc.queryForList(sql); // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            jdbc.queryForList(sql);
+        }
+        return (System.nanoTime() - start) / 20_000;
+    }
+
+    private static String explain(JdbcTemplate jdbc, String sql) {
+        return jdbc.queryForObject("EXPLAIN " + sql, String.class).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,109 @@
+package com.attvin.config;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.model.MaterialRecord;
+import com.attvin.service.MaterialService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Upgrades a database in the original layout (identity IDs, one table per
+ * material type, picture bytes in material_pictures) with the migrations
+ * and starts the application on it with ddl-auto=validate, as happens to an
+ * existing database that is baselined at V1.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:upgraded;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.flyway.enabled=true",
+        "spring.jpa.generate-ddl=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect"
+})
+@ActiveProfiles("test")
+class SchemaUpgradeTest {
+
+    private static final byte[] PICTURE = {1, 2, 3, 4};
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void upgradesADatabaseInTheOriginalLayout() {
+        MaterialRecordDTO door = materialService.getMaterialById(7L);
+        assertEquals("Old Door", door.getName());
+        assertEquals("Door", door.getMaterialType());
+        assertEquals(210.0, door.getHeight());
+        assertEquals("LEFT", door.getSwingDirection());
+        assertEquals(1, door.getPictures().size());
+        assertArrayEquals(PICTURE, materialService.getPictureData(door.getPictures().get(0).getId()));
+
+        MaterialRecordDTO window = materialService.getMaterialById(12L);
+        assertEquals("TILT", window.getOpeningType());
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM material_records WHERE last_modified IS NULL OR last_modified <> date_added",
+                Integer.class));
+    }
+
+    @Test
+    void allocatesMaterialIdsPastTheExistingIdentityIds() {
+        assertEquals(12 + MaterialRecord.ID_ALLOCATION_SIZE, jdbcTemplate.queryForObject(
+                "SELECT next_val FROM id_generators WHERE sequence_name = 'material_records'", Long.class));
+
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName("New Door");
+        dto.setCategory("Doors");
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("RIGHT");
+        Long id = materialService.createMaterial(dto, null).getId();
+
+        assertTrue(id > 12, "New ID " + id + " must not reuse an identity ID");
+        materialService.deleteMaterial(id);
+    }
+
+    @TestConfiguration
+    static class OriginalSchema {
+
+        /**
+         * Creates the original schema and its rows first, then runs the remaining migrations
+         */
+        @Bean
+        FlywayMigrationStrategy upgradeFromOriginalSchema() {
+            return flyway -> {
+                Flyway.configure().configuration(flyway.getConfiguration()).target("1").load().migrate();
+                insertOriginalRows(new JdbcTemplate(flyway.getConfiguration().getDataSource()));
+                flyway.migrate();
+            };
+        }
+
+        private static void insertOriginalRows(JdbcTemplate jdbc) {
+            jdbc.update("INSERT INTO material_records (id, material_type, name, category, material_condition, color, date_added) "
+                    + "VALUES (7, 'DOOR', 'Old Door', 'Doors', 'Reusable', 'White', TIMESTAMP '2023-05-01 10:00:00')");
+            jdbc.update("INSERT INTO doors (id, width, height, swing_direction) VALUES (7, 90, 210, 'LEFT')");
+            jdbc.update("INSERT INTO material_records (id, material_type, name, category, material_condition, color, date_added) "
+                    + "VALUES (12, 'WINDOW', 'Old Window', 'Windows', 'Good', 'Grey', TIMESTAMP '2023-06-01 10:00:00')");
+            jdbc.update("INSERT INTO windows (id, width, height, opening_type) VALUES (12, 120, 100, 'TILT')");
+            jdbc.update("INSERT INTO material_pictures (material_id, file_name, content_type, file_size, picture_data, "
+                    + "upload_date, is_primary) VALUES (7, 'door.png', 'image/png', 4, ?, TIMESTAMP '2023-05-01 10:00:00', TRUE)",
+                    (Object) PICTURE);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.attvin.controller;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.service.MaterialService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Not transactional: ETags move after commit, so every write here has to
+ * commit for real.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser
+class MaterialConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void answersAnUnchangedMaterialWith304FromItsVersion() throws Exception {
+        MaterialRecordDTO dto = door("Versioned Door");
+        Long id = materialService.createMaterial(dto, null).getId();
+        String url = "/api/materials/" + id;
+
+        String eTag = eTag(url);
+        Statistics statistics = statistics();
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Only the version may be read");
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        dto.setName("Renamed Versioned Door");
+        materialService.updateMaterial(id, dto);
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+        String renamed = eTag(url);
+        assertNotEquals(eTag, renamed);
+
+        materialService.addPicturesToMaterial(id, List.of(
+                new MockMultipartFile("pictures", "door.png", "image/png", new byte[] {1, 2, 3})));
+        assertNotEquals(renamed, eTag(url), "Picture changes must change the material's ETag");
+
+        materialService.deleteMaterial(id);
+    }
+
+    @Test
+    void answersUnchangedListsAndStatsWith304WithoutQueries() throws Exception {
+        for (String url : List.of("/api/materials?category=Doors", "/api/materials/scroll", "/api/materials/stats",
+                "/api/audit-trail")) {
+            String eTag = eTag(url);
+            Statistics statistics = statistics();
+            mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isNotModified());
+            assertEquals(0, statistics.getPrepareStatementCount(), url);
+
+            Long id = materialService.createMaterial(door("Listed Door"), null).getId();
+            mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isOk());
+            materialService.deleteMaterial(id);
+        }
+    }
+
+    private String eTag(String url) throws Exception {
+        return mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private static MaterialRecordDTO door(String name) {
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName(name);
+        dto.setCategory("Doors");
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("LEFT");
+        return dto;
+    }
+}
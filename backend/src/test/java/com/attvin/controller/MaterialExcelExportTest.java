@@ -0,0 +1,95 @@
+package com.attvin.controller;
+
+import com.attvin.repository.MaterialRepository;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser
+class MaterialExcelExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Test
+    void streamsEveryMaterialAsAWorkbookRow() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/materials/export-excel"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(body))) {
+            Sheet sheet = workbook.getSheet("Materials");
+            assertEquals("Name", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(materialRepository.count(), sheet.getLastRowNum());
+        }
+    }
+
+    @Test
+    void setsTheWatermarkBackByTheSafetyWindow() throws Exception {
+        LocalDateTime before = LocalDateTime.now();
+        String watermark = mockMvc.perform(get("/api/materials/export-csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse().getHeader("X-Export-Timestamp");
+
+        assertTrue(LocalDateTime.parse(watermark).isBefore(before.minusSeconds(299)));
+    }
+
+    @Test
+    void rejectsAnUnknownTypeBeforeStreaming() throws Exception {
+        mockMvc.perform(get("/api/materials/export-excel").param("type", "SPACESHIP"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/materials/export-ndjson").param("type", "SPACESHIP"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void servesTheCachedTemplateWithAnETag() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/materials/excel-template"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        // Derived from the template version and enum values, not from the bytes POI writes
+        assertTrue(eTag.matches("\"1-[0-9a-f]{64}\""), eTag);
+
+        try (Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(first.getResponse().getContentAsByteArray()))) {
+            assertEquals("Name", workbook.getSheet("Material Template").getRow(0).getCell(0).getStringCellValue());
+        }
+
+        mockMvc.perform(get("/api/materials/excel-template").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/materials/excel-template"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+    }
+}
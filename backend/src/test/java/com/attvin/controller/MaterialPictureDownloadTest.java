@@ -0,0 +1,72 @@
+package com.attvin.controller;
+
+import com.attvin.model.MaterialPicture;
+import com.attvin.repository.MaterialPictureRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser
+class MaterialPictureDownloadTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MaterialPictureRepository materialPictureRepository;
+
+    private MaterialPicture picture;
+
+    @BeforeEach
+    void findSamplePicture() {
+        // DataInitializer stores one sample picture per material
+        picture = materialPictureRepository.findAll().get(0);
+    }
+
+    @Test
+    void streamsWholePictureWithValidators() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/materials/pictures/{id}", picture.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(picture.getContentType()))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+
+        assertEquals(picture.getFileSize().intValue(), result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void answersRangeRequestWithPartialContent() throws Exception {
+        mockMvc.perform(get("/api/materials/pictures/{id}", picture.getId())
+                        .header(HttpHeaders.RANGE, "bytes=2-11"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-11/" + picture.getFileSize()))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10));
+    }
+
+    @Test
+    void answersMatchingETagWithNotModified() throws Exception {
+        String eTag = mockMvc.perform(get("/api/materials/pictures/{id}", picture.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/materials/pictures/{id}", picture.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+}
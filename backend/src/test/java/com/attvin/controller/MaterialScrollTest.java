@@ -0,0 +1,55 @@
+package com.attvin.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser
+class MaterialScrollTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void followsTheNextCursor() throws Exception {
+        mockMvc.perform(get("/api/materials/scroll").param("size", "1").param("cursor", firstCursor()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1));
+    }
+
+    @Test
+    void rejectsInvalidCursorsAndTypesWith400() throws Exception {
+        mockMvc.perform(get("/api/materials/scroll").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("Invalid cursor")));
+        // A cursor from the other sort order
+        mockMvc.perform(get("/api/materials/scroll").param("sort", "NAME").param("cursor", firstCursor()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/materials/scroll").param("type", "SPACESHIP"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String firstCursor() throws Exception {
+        String first = mockMvc.perform(get("/api/materials/scroll").param("size", "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(first).get("nextCursor").asText();
+    }
+}
@@ -0,0 +1,175 @@
+package com.attvin.controller;
+
+import com.attvin.repository.MaterialRepository;
+import com.attvin.storage.PictureStorage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.test.context.TestSecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "material.pictures.uploads.chunk-size=4")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser
+class PictureUploadControllerTest {
+
+    private static final byte[] PICTURE = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @SpyBean
+    private PictureStorage pictureStorage;
+
+    @Test
+    void resumesOutOfOrderChunksAndAttachesPictureOnCompletion() throws Exception {
+        Long materialId = materialRepository.findAll().get(0).getId();
+        String base = "/api/materials/" + materialId + "/pictures/uploads";
+
+        String started = mockMvc.perform(post(base)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fileName\":\"chunked.bin\",\"contentType\":\"application/octet-stream\","
+                                + "\"totalSize\":10,\"sha256\":\"" + sha256(PICTURE) + "\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.chunkCount").value(3))
+                .andReturn().getResponse().getContentAsString();
+        String upload = base + "/" + objectMapper.readTree(started).get("uploadId").asText();
+        String chunks = upload + "/chunks/";
+
+        mockMvc.perform(put(chunks + 2).content(chunk(2))).andExpect(status().isOk());
+        mockMvc.perform(put(chunks + 0).content(chunk(0)).header("X-Chunk-SHA256", sha256(chunk(0))))
+                .andExpect(status().isOk());
+
+        // The interrupted client asks which chunks arrived, then sends the rest
+        mockMvc.perform(get(upload))
+                .andExpect(jsonPath("$.receivedChunks.length()").value(2));
+        mockMvc.perform(post(upload + "/complete"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put(chunks + 1).content(chunk(1)).header("X-Chunk-SHA256", sha256(chunk(0))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put(chunks + 1).content(chunk(1))).andExpect(status().isOk());
+
+        String picture = mockMvc.perform(post(upload + "/complete"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fileSize").value(10))
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(get("/api/materials/pictures/{id}", objectMapper.readTree(picture).get("id").asLong()))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(PICTURE));
+    }
+
+    @Test
+    void failedRewriteOfReceivedChunkLeavesItMissing() throws Exception {
+        String upload = startUpload();
+        String chunks = upload + "/chunks/";
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(put(chunks + i).content(chunk(i))).andExpect(status().isOk());
+        }
+
+        // The retry overwrites part of chunk 0 before its checksum fails
+        mockMvc.perform(put(chunks + 0).content(chunk(1)).header("X-Chunk-SHA256", sha256(chunk(0))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(upload))
+                .andExpect(jsonPath("$.receivedChunks.length()").value(2));
+        mockMvc.perform(post(upload + "/complete"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(put(chunks + 0).content(chunk(0))).andExpect(status().isOk());
+        mockMvc.perform(post(upload + "/complete")).andExpect(status().isOk());
+    }
+
+    @Test
+    void rejectsSecondCompletionWhileTheFirstIsStoring() throws Exception {
+        String upload = startUpload();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(put(upload + "/chunks/" + i).content(chunk(i))).andExpect(status().isOk());
+        }
+
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            storing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(pictureStorage).store(any());
+
+        SecurityContext context = TestSecurityContextHolder.getContext();
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> {
+            TestSecurityContextHolder.setContext(context);
+            try {
+                return mockMvc.perform(post(upload + "/complete")).andReturn().getResponse().getStatus();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                TestSecurityContextHolder.clearContext();
+            }
+        });
+        try {
+            assertTrue(storing.await(10, TimeUnit.SECONDS));
+            mockMvc.perform(post(upload + "/complete")).andExpect(status().isConflict());
+            mockMvc.perform(put(upload + "/chunks/0").content(chunk(0))).andExpect(status().isConflict());
+            mockMvc.perform(delete(upload)).andExpect(status().isConflict());
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(200, first.get(10, TimeUnit.SECONDS));
+        mockMvc.perform(get(upload)).andExpect(status().isNotFound());
+    }
+
+    private String startUpload() throws Exception {
+        Long materialId = materialRepository.findAll().get(0).getId();
+        String base = "/api/materials/" + materialId + "/pictures/uploads";
+        String started = mockMvc.perform(post(base)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fileName\":\"chunked.bin\",\"contentType\":\"application/octet-stream\","
+                                + "\"totalSize\":10,\"sha256\":\"" + sha256(PICTURE) + "\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return base + "/" + objectMapper.readTree(started).get("uploadId").asText();
+    }
+
+    private static byte[] chunk(int index) {
+        return Arrays.copyOfRange(PICTURE, index * 4, Math.min(PICTURE.length, index * 4 + 4));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,62 @@
+package com.attvin.search;
+
+import com.attvin.event.MaterialChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryMaterialSearchIndexTest {
+
+    private InMemoryMaterialSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InMemoryMaterialSearchIndex();
+        index.rebuild(List.of(
+                material(1L, "Oak Corner Desk", "Slightly scratched", "Oak", "Furniture", "Desk", "Reusable"),
+                material(2L, "Office Door", "Solid oak panel", "Brown", "Doors", "Door", "Damaged"),
+                material(3L, "Mobile Drawer Unit", "Three drawers", "Black", "Furniture", "DrawerUnit", "New")));
+    }
+
+    @Test
+    void ranksNameMatchesAboveNotesMatches() {
+        SearchResult result = index.search("oak", null, null, null, 0, 10);
+        assertEquals(List.of(1L, 2L), result.getMaterialIds());
+        assertEquals(2, result.getTotalHits());
+    }
+
+    @Test
+    void matchesPrefixesAndRequiresEveryTerm() {
+        assertEquals(List.of(3L), index.search("draw", null, null, null, 0, 10).getMaterialIds());
+        assertEquals(List.of(1L), index.search("oak desk", null, null, null, 0, 10).getMaterialIds());
+        assertEquals(0, index.search("oak wheels", null, null, null, 0, 10).getTotalHits());
+    }
+
+    @Test
+    void appliesFiltersAndPaging() {
+        assertEquals(List.of(2L), index.search("oak", null, "DOOR", null, 0, 10).getMaterialIds());
+        assertEquals(List.of(1L), index.search("oak", "Furniture", null, "Reusable", 0, 10).getMaterialIds());
+
+        SearchResult secondPage = index.search("oak", null, null, null, 1, 1);
+        assertEquals(List.of(2L), secondPage.getMaterialIds());
+        assertEquals(2, secondPage.getTotalHits());
+    }
+
+    @Test
+    void reindexReplacesAndRemoveDropsDocuments() {
+        index.index(material(1L, "Walnut Corner Desk", null, "Walnut", "Furniture", "Desk", "Reusable"));
+        assertEquals(List.of(2L), index.search("oak", null, null, null, 0, 10).getMaterialIds());
+
+        index.remove(2L);
+        assertEquals(0, index.search("oak", null, null, null, 0, 10).getTotalHits());
+    }
+
+    private static MaterialChangedEvent.Snapshot material(Long id, String name, String notes, String color,
+                                                          String category, String type, String condition) {
+        return new MaterialChangedEvent.Snapshot(id, name, notes, color, category, type, condition, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,67 @@
+package com.attvin.search;
+
+import com.attvin.event.MaterialChangedEvent;
+import com.attvin.model.Desk;
+import com.attvin.repository.MaterialRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MaterialSearchIndexerTest {
+
+    private static final LocalDateTime ADDED = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final MaterialRepository materialRepository = mock(MaterialRepository.class);
+    private final InMemoryMaterialSearchIndex index = new InMemoryMaterialSearchIndex();
+    private final MaterialSearchIndexer indexer = new MaterialSearchIndexer(materialRepository, index);
+
+    @Test
+    void appliesChangesCommittedWhileTheIndexIsLoaded() {
+        when(materialRepository.findSearchFields()).thenAnswer(invocation -> {
+            // The load has read material 1 under its old name when these changes commit
+            indexer.onMaterialChanged(MaterialChangedEvent.updated(snapshot(1L, "Walnut Desk"), desk(1L, "Maple Desk")));
+            indexer.onMaterialChanged(MaterialChangedEvent.created(desk(2L, "Pine Desk")));
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(row(1L, "Walnut Desk"));
+            return rows;
+        });
+        assertFalse(indexer.isBuilt());
+
+        indexer.rebuild();
+
+        assertTrue(indexer.isBuilt());
+        assertEquals(List.of(1L), index.search("maple", null, null, null, 0, 10).getMaterialIds());
+        assertEquals(0, index.search("walnut", null, null, null, 0, 10).getTotalHits());
+        assertEquals(List.of(2L), index.search("pine", null, null, null, 0, 10).getMaterialIds());
+
+        // Once built, changes go straight to the index
+        indexer.onMaterialChanged(MaterialChangedEvent.deleted(snapshot(2L, "Pine Desk")));
+        assertEquals(0, index.search("pine", null, null, null, 0, 10).getTotalHits());
+    }
+
+    private static Desk desk(Long id, String name) {
+        Desk desk = new Desk();
+        desk.setId(id);
+        desk.setName(name);
+        desk.setCategory("Furniture");
+        desk.setMaterialCondition("Reusable");
+        desk.setDateAdded(ADDED);
+        return desk;
+    }
+
+    private static MaterialChangedEvent.Snapshot snapshot(Long id, String name) {
+        return new MaterialChangedEvent.Snapshot(id, name, null, null, "Furniture", "Desk", "Reusable", ADDED);
+    }
+
+    private static Object[] row(Long id, String name) {
+        return new Object[] {id, name, null, null, "Furniture", Desk.class, "Reusable", ADDED};
+    }
+}
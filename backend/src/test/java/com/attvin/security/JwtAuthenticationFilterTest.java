@@ -0,0 +1,108 @@
+package com.attvin.security;
+
+import com.attvin.dto.UserDTO;
+import com.attvin.repository.UserRepository;
+import com.attvin.service.UserService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.security.Key;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class JwtAuthenticationFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void verifiesATokenOnceAndServesRepeatedRequestsFromTheCache() throws Exception {
+        UserDTO user = new UserDTO();
+        user.setEmail("cached-token@example.com");
+        user.setName("Cached Token");
+        user.setPassword("secret-password");
+        userService.createUser(user);
+        String token = jwtUtil.generateToken(userRepository.findByEmail(user.getEmail()).orElseThrow());
+
+        double verified = authentications("verified");
+        double cached = authentications("cached");
+        mockMvc.perform(get("/api/materials/stats").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/materials/stats").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+
+        assertEquals(0, statistics.getPrepareStatementCount(), "A cached token must not look up the user");
+        assertEquals(verified + 1, authentications("verified"));
+        assertEquals(cached + 1, authentications("cached"));
+    }
+
+    @Test
+    void rejectsATamperedToken() throws Exception {
+        double rejected = authentications("rejected");
+
+        mockMvc.perform(get("/api/materials/stats").header(HttpHeaders.AUTHORIZATION, "Bearer not.a.token"))
+                .andExpect(status().isForbidden());
+
+        assertEquals(rejected + 1, authentications("rejected"));
+    }
+
+    @Test
+    void verifiesATokenWithoutExpirationOnEveryRequest() throws Exception {
+        UserDTO user = new UserDTO();
+        user.setEmail("no-expiration@example.com");
+        user.setName("No Expiration");
+        user.setPassword("secret-password");
+        userService.createUser(user);
+        String token = Jwts.builder()
+                .setSubject(user.getEmail())
+                .signWith((Key) ReflectionTestUtils.getField(jwtUtil, "signingKey"), SignatureAlgorithm.HS256)
+                .compact();
+
+        double verified = authentications("verified");
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/materials/stats").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isOk());
+        }
+
+        assertEquals(verified + 2, authentications("verified"), "A token without expiration must not be cached");
+    }
+
+    private double authentications(String result) {
+        return meterRegistry.get("security.jwt.authentication").tag("result", result).timer().count();
+    }
+}
@@ -0,0 +1,114 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.ImportJobDTO;
+import com.attvin.io.ImportMode;
+import com.attvin.model.Desk;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImportJobServiceImplTest {
+
+    private final MaterialFactory materialFactory = mock(MaterialFactory.class);
+    private final MaterialImportWriter writer = mock(MaterialImportWriter.class);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ThreadPoolExecutor parseExecutor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(4), new ThreadPoolExecutor.CallerRunsPolicy());
+    // Chunks of two rows, so the valid rows of a sheet are imported in transactions of two
+    private final MaterialImportPipeline importPipeline = new MaterialImportPipeline(materialFactory, writer, mock(MaterialImportKeys.class), parseExecutor, 2);
+    private final ImportJobServiceImpl importJobService = new ImportJobServiceImpl(importPipeline, executor, 24);
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+        parseExecutor.shutdownNow();
+    }
+
+    @Test
+    void reportsProgressAndFailedRows() throws Exception {
+        when(materialFactory.build(any())).thenAnswer(invocation -> new Desk());
+        when(materialFactory.build(argThat(dto -> dto != null && "Material 4".equals(dto.getName()))))
+                .thenThrow(new IllegalArgumentException("Unsupported material type: \"X\""));
+
+        ImportJobDTO job = importJobService.startExcelImport(sheetWithRows(5), ImportMode.CREATE);
+        ImportJobDTO finished = awaitFinished(job.getJobId());
+
+        assertEquals("COMPLETED", finished.getStatus());
+        assertEquals(5, finished.getRowsRead());
+        assertEquals(4, finished.getRowsCreated());
+        assertEquals(1, finished.getRowsFailed());
+        assertTrue(finished.getRowsPerSecond() > 0);
+        verify(writer, times(2)).write(anyList(), anyMap());
+
+        String report = importJobService.getErrorReport(job.getJobId()).getContentAsString(StandardCharsets.UTF_8);
+        assertEquals("row,reason\n5,\"Unsupported material type: \"\"X\"\"\"\n", report.replace("\r\n", "\n"));
+    }
+
+    @Test
+    void stopsBeforeTheNextChunkWhenCancelled() throws Exception {
+        CountDownLatch firstChunkStarted = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(materialFactory.build(any())).thenAnswer(invocation -> new Desk());
+        doAnswer(invocation -> {
+            firstChunkStarted.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            return Set.of();
+        }).when(writer).write(anyList(), anyMap());
+
+        ImportJobDTO job = importJobService.startExcelImport(sheetWithRows(5), ImportMode.CREATE);
+        assertTrue(firstChunkStarted.await(5, TimeUnit.SECONDS));
+        importJobService.cancelJob(job.getJobId());
+        cancelled.countDown();
+
+        ImportJobDTO finished = awaitFinished(job.getJobId());
+        assertEquals("CANCELLED", finished.getStatus());
+        assertEquals(2, finished.getRowsCreated());
+        verify(writer, times(1)).write(anyList(), anyMap());
+    }
+
+    private ImportJobDTO awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        ImportJobDTO job = importJobService.getJob(jobId);
+        while (job.getFinishedAt() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            job = importJobService.getJob(jobId);
+        }
+        return job;
+    }
+
+    private static MockMultipartFile sheetWithRows(int rows) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Material Template");
+            sheet.createRow(0).createCell(0).setCellValue("Name");
+            for (int i = 1; i <= rows; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("Material " + i);
+            }
+            workbook.write(out);
+            return new MockMultipartFile("file", "materials.xlsx", null, out.toByteArray());
+        }
+    }
+}
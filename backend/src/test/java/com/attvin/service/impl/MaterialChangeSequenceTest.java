@@ -0,0 +1,68 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.search.MaterialSearchIndexer;
+import com.attvin.service.MaterialService;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+
+/**
+ * A change token handed out after the sequence moves must describe state
+ * that already includes the change, so every listener that keeps derived
+ * state has to run before the sequence's after-commit listener.
+ *
+ * The spies need a context of their own, which gets its own database so it
+ * does not re-create the tables under the shared test context.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:changesequence;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class MaterialChangeSequenceTest {
+
+    @Autowired
+    private MaterialService materialService;
+
+    @SpyBean
+    private MaterialChangeSequence changeSequence;
+
+    @SpyBean
+    private MaterialStatsCounters statsCounters;
+
+    @SpyBean
+    private MaterialSearchIndexer searchIndexer;
+
+    @SpyBean
+    private MaterialDetailCache detailCache;
+
+    @Test
+    void appliesDerivedStateBeforeMovingTheToken() {
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName("Ordered Door");
+        dto.setCategory("Order Test");
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("LEFT");
+        materialService.createMaterial(dto, null);
+
+        InOrder stats = inOrder(statsCounters, changeSequence);
+        stats.verify(statsCounters).onMaterialChanged(any());
+        stats.verify(changeSequence).afterCommit();
+
+        InOrder search = inOrder(searchIndexer, changeSequence);
+        search.verify(searchIndexer).onMaterialChanged(any());
+        search.verify(changeSequence).afterCommit();
+
+        InOrder details = inOrder(detailCache, changeSequence);
+        details.verify(detailCache).onMaterialChanged(any());
+        details.verify(changeSequence).afterCommit();
+    }
+}
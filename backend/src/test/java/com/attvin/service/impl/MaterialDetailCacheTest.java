@@ -0,0 +1,78 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.service.MaterialService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Not transactional: the cache is invalidated after commit, so every write
+ * here has to commit for real.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MaterialDetailCacheTest {
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void servesRepeatedReadsFromTheCacheUntilTheMaterialChanges() {
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName("Cached Door");
+        dto.setCategory("Cache Test");
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("LEFT");
+        Long id = materialService.createMaterial(dto, null).getId();
+
+        materialService.getMaterialById(id);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        double hits = cacheGets("hit");
+
+        assertEquals("Cached Door", materialService.getMaterialById(id).getName());
+        assertEquals(0, statistics.getPrepareStatementCount(), "A cached read must not query the database");
+        assertEquals(hits + 1, cacheGets("hit"));
+
+        dto.setName("Renamed Door");
+        materialService.updateMaterial(id, dto);
+        assertEquals("Renamed Door", materialService.getMaterialById(id).getName());
+
+        materialService.addPicturesToMaterial(id, List.of(
+                new MockMultipartFile("pictures", "door.png", "image/png", new byte[] {1, 2, 3})));
+        assertEquals(1, materialService.getMaterialById(id).getPictures().size());
+
+        materialService.deleteMaterial(id);
+        assertThrows(RuntimeException.class, () -> materialService.getMaterialById(id));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", MaterialDetailCache.CACHE_NAME)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
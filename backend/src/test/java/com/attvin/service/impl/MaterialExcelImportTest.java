@@ -0,0 +1,225 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.ImportSummaryDTO;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialRow;
+import com.attvin.model.Desk;
+import com.attvin.model.DrawerUnit;
+import com.attvin.model.MaterialRecord;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MaterialExcelImportTest {
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Test
+    void importsRowsFromTheEventReaderUsingTheTemplateLayout() throws Exception {
+        long before = materialRepository.count();
+
+        byte[] xlsx;
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Material Template");
+            sheet.createRow(0).createCell(0).setCellValue("Name");
+
+            Row desk = sheet.createRow(1);
+            desk.createCell(0).setCellValue("Imported desk");
+            desk.createCell(1).setCellValue("Furniture");
+            desk.createCell(2).setCellValue("DESK");
+            desk.createCell(3).setCellValue("Good");
+            desk.createCell(4).setCellValue("White");
+            desk.createCell(6).setCellValue(160);
+            desk.createCell(8).setCellValue(80);
+            desk.createCell(9).setCellValue("STRAIGHT_DESK");
+            desk.createCell(10).setCellValue(true);
+            desk.createCell(11).setCellValue(125.5);
+
+            // A blank row in between is skipped
+            sheet.createRow(3);
+
+            Row drawers = sheet.createRow(4);
+            drawers.createCell(0).setCellValue("Imported drawers");
+            drawers.createCell(1).setCellValue("Furniture");
+            drawers.createCell(2).setCellValue("DRAWER_UNIT");
+            drawers.createCell(3).setCellValue("Fair");
+            drawers.createCell(4).setCellValue("Grey");
+            drawers.createCell(6).setCellValue("45");
+            drawers.createCell(7).setCellValue("60");
+            drawers.createCell(8).setCellValue("50");
+            drawers.createCell(16).setCellValue(1);
+
+            // An unknown type fails and is skipped without stopping the import
+            Row invalid = sheet.createRow(5);
+            invalid.createCell(0).setCellValue("Unknown");
+            invalid.createCell(2).setCellValue("SPACESHIP");
+
+            // So does a row with a missing required value
+            Row incomplete = sheet.createRow(6);
+            incomplete.createCell(0).setCellValue("No colour");
+            incomplete.createCell(1).setCellValue("Furniture");
+            incomplete.createCell(2).setCellValue("DRAWER_UNIT");
+            incomplete.createCell(3).setCellValue("Fair");
+            incomplete.createCell(6).setCellValue(45);
+            incomplete.createCell(7).setCellValue(60);
+            incomplete.createCell(8).setCellValue(50);
+            incomplete.createCell(16).setCellValue(false);
+
+            workbook.write(out);
+            xlsx = out.toByteArray();
+        }
+
+        materialService.importMaterialsFromExcel(new MockMultipartFile("file", "materials.xlsx", null, xlsx), ImportMode.CREATE);
+
+        assertEquals(before + 2, materialRepository.count());
+        List<MaterialRecord> imported = materialRepository.findAll().stream()
+                .sorted(Comparator.comparing(MaterialRecord::getId).reversed())
+                .limit(2)
+                .toList();
+
+        DrawerUnit drawerUnit = (DrawerUnit) imported.get(0);
+        assertEquals(45.0, drawerUnit.getWidth());
+        assertTrue(drawerUnit.getHasWheels());
+
+        Desk importedDesk = (Desk) imported.get(1);
+        assertEquals("Imported desk", importedDesk.getName());
+        assertEquals(Desk.DeskType.STRAIGHT_DESK, importedDesk.getDeskType());
+        assertEquals(125.5, importedDesk.getMaximumHeight());
+        assertTrue(importedDesk.getHeightAdjustable());
+    }
+
+    @Test
+    void upsertImportUpdatesChangedRowsAndSkipsUnchangedOnes() throws Exception {
+        long before = materialRepository.count();
+
+        ImportSummaryDTO first = materialService.importMaterialsFromExcel(
+                upsertSheet("Original notes", null, false), ImportMode.UPSERT);
+        assertEquals(2, first.getRowsCreated());
+        assertEquals(before + 2, materialRepository.count());
+
+        // Same sheet with one changed value and the drawer row repeated
+        ImportSummaryDTO second = materialService.importMaterialsFromExcel(
+                upsertSheet("Changed notes", null, true), ImportMode.UPSERT);
+        assertEquals(0, second.getRowsCreated());
+        assertEquals(1, second.getRowsUpdated());
+        assertEquals(2, second.getRowsSkipped());
+        assertEquals(0, second.getRowsFailed());
+        assertEquals(before + 2, materialRepository.count());
+
+        MaterialRecord desk = materialRepository.findAll().stream()
+                .filter(material -> material.getName().equals("Upsert desk"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("Changed notes", desk.getNotes());
+
+        // An ID column takes precedence over the natural key
+        MaterialRecord drawers = materialRepository.findAll().stream()
+                .filter(material -> material.getName().equals("Upsert drawers"))
+                .findFirst()
+                .orElseThrow();
+        ImportSummaryDTO byId = materialService.importMaterialsFromExcel(
+                upsertSheet("Changed notes", drawers.getId(), false), ImportMode.UPSERT);
+        assertEquals(1, byId.getRowsUpdated());
+        assertEquals(1, byId.getRowsSkipped());
+        assertEquals("Renamed drawers", materialRepository.findById(drawers.getId()).orElseThrow().getName());
+        assertEquals(before + 2, materialRepository.count());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void importsNothingWhenALaterChunkFailsToSave() throws Exception {
+        long before = materialRepository.count();
+
+        byte[] xlsx;
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Material Template");
+            sheet.createRow(0).createCell(0).setCellValue("Name");
+            // The first chunk of 500 rows saves; the name of the last row is too long for its column
+            for (int i = 1; i <= 501; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i < 501 ? "Atomic Unit " + i : "X".repeat(300));
+                row.createCell(1).setCellValue("Atomic");
+                row.createCell(2).setCellValue("DRAWER_UNIT");
+                row.createCell(3).setCellValue("Reusable");
+                row.createCell(4).setCellValue("Grey");
+                row.createCell(6).setCellValue(60);
+                row.createCell(7).setCellValue(40);
+                row.createCell(8).setCellValue(45);
+                row.createCell(16).setCellValue(false);
+            }
+            workbook.write(out);
+            xlsx = out.toByteArray();
+        }
+
+        assertThrows(RuntimeException.class, () -> materialService.importMaterialsFromExcel(
+                new MockMultipartFile("file", "materials.xlsx", null, xlsx), ImportMode.CREATE));
+        assertEquals(before, materialRepository.count());
+    }
+
+    /**
+     * Helper method to build a sheet with one desk and one drawer unit. When
+     * a drawer ID is given the drawer row carries it and a new name.
+     */
+    private static MockMultipartFile upsertSheet(String deskNotes, Long drawerId, boolean repeatDrawers) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Material Template");
+            sheet.createRow(0).createCell(0).setCellValue("Name");
+
+            Row desk = sheet.createRow(1);
+            desk.createCell(0).setCellValue("Upsert desk");
+            desk.createCell(1).setCellValue("Furniture");
+            desk.createCell(2).setCellValue("DESK");
+            desk.createCell(3).setCellValue("Good");
+            desk.createCell(4).setCellValue("White");
+            desk.createCell(5).setCellValue(deskNotes);
+            desk.createCell(6).setCellValue(140);
+            desk.createCell(8).setCellValue(70);
+            desk.createCell(9).setCellValue("STRAIGHT_DESK");
+            desk.createCell(10).setCellValue(false);
+            desk.createCell(11).setCellValue(72);
+
+            for (int i = 0; i < (repeatDrawers ? 2 : 1); i++) {
+                Row drawers = sheet.createRow(2 + i);
+                drawers.createCell(0).setCellValue(drawerId != null ? "Renamed drawers" : "Upsert drawers");
+                drawers.createCell(1).setCellValue("Furniture");
+                drawers.createCell(2).setCellValue("DRAWER_UNIT");
+                drawers.createCell(3).setCellValue("Fair");
+                drawers.createCell(4).setCellValue("Grey");
+                drawers.createCell(6).setCellValue(40);
+                drawers.createCell(7).setCellValue(55);
+                drawers.createCell(8).setCellValue(45);
+                drawers.createCell(16).setCellValue(false);
+                if (drawerId != null) {
+                    drawers.createCell(MaterialRow.ID_COLUMN).setCellValue(drawerId);
+                }
+            }
+
+            workbook.write(out);
+            return new MockMultipartFile("file", "materials.xlsx", null, out.toByteArray());
+        }
+    }
+}
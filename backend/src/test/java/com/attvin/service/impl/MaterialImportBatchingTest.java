@@ -0,0 +1,94 @@
+package com.attvin.service.impl;
+
+import com.attvin.io.ImportMode;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the Excel import sends its inserts in JDBC batches: the
+ * number of prepared statements must be a small fraction of the row count.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MaterialImportBatchingTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterialImportBatchingTest.class);
+
+    private static final int ROWS = 10_000;
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void importsTenThousandRowsInBatches() throws Exception {
+        byte[] xlsx = buildSheet(ROWS);
+        long before = materialRepository.count();
+
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        long start = System.nanoTime();
+        materialService.importMaterialsFromExcel(new MockMultipartFile("file", "materials.xlsx", null, xlsx), ImportMode.CREATE);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long statements = statistics.getPrepareStatementCount();
+        logger.info("Imported {} rows: {} statements, {} entity inserts, {} ms ({} rows/s)",
+                ROWS, statements, statistics.getEntityInsertCount(), elapsedMillis,
+                ROWS * 1000L / Math.max(1, elapsedMillis));
+
+        assertEquals(before + ROWS, materialRepository.count());
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        // One statement per row and table without batching; with batches of 50 it is about 2 per 50 rows
+        assertTrue(statements < ROWS / 10, "Expected batched inserts, got " + statements + " statements");
+    }
+
+    private static byte[] buildSheet(int rows) throws Exception {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Material Template");
+            sheet.createRow(0).createCell(0).setCellValue("Name");
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("Imported Unit " + i);
+                row.createCell(1).setCellValue("Batch");
+                row.createCell(2).setCellValue("DRAWER_UNIT");
+                row.createCell(3).setCellValue("Reusable");
+                row.createCell(4).setCellValue("Grey");
+                row.createCell(6).setCellValue(60);
+                row.createCell(7).setCellValue(40);
+                row.createCell(8).setCellValue(45);
+                row.createCell(16).setCellValue(i % 2 == 0);
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.io.ImportCancelledException;
+import com.attvin.io.ImportListener;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialRow;
+import com.attvin.io.MaterialSource;
+import com.attvin.io.RowError;
+import com.attvin.model.Desk;
+import com.attvin.model.MaterialRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MaterialImportPipelineTest {
+
+    private static final int PARSE_THREADS = 2;
+    private static final int CHUNK_SIZE = 50;
+
+    private final MaterialFactory materialFactory = mock(MaterialFactory.class);
+    private final MaterialImportWriter writer = mock(MaterialImportWriter.class);
+    private final MaterialImportKeys importKeys = mock(MaterialImportKeys.class);
+    private final ThreadPoolExecutor parseExecutor = new ThreadPoolExecutor(PARSE_THREADS, PARSE_THREADS,
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(2 * PARSE_THREADS), new ThreadPoolExecutor.CallerRunsPolicy());
+    private final MaterialImportPipeline importPipeline = new MaterialImportPipeline(materialFactory, writer,
+            importKeys, parseExecutor, CHUNK_SIZE);
+
+    // Names of the written materials, in the order the writer received them
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<Thread> readerThread = new AtomicReference<>();
+    private final AtomicInteger rowsRead = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(materialFactory.build(any())).thenAnswer(invocation -> {
+            MaterialRecordDTO dto = invocation.getArgument(0);
+            if (dto.getName().startsWith("Bad")) {
+                throw new IllegalArgumentException("Unsupported material type: \"X\"");
+            }
+            Desk desk = new Desk();
+            desk.setName(dto.getName());
+            return desk;
+        });
+        doAnswer(invocation -> {
+            List<MaterialRecord> inserts = invocation.getArgument(0);
+            inserts.forEach(material -> written.add(material.getName()));
+            return Set.of();
+        }).when(writer).write(anyList(), anyMap());
+    }
+
+    @AfterEach
+    void shutDown() {
+        parseExecutor.shutdownNow();
+    }
+
+    @Test
+    void writesRowsInSourceOrderAlthoughBatchesAreParsedConcurrently() throws Exception {
+        List<Integer> failedRows = new ArrayList<>();
+
+        importPipeline.run(rows(2_000, 777, 1_503), ImportMode.CREATE, new ImportListener() {
+            @Override
+            public void rowFailed(RowError error) {
+                failedRows.add(error.getRowNumber());
+            }
+        });
+
+        List<String> expected = IntStream.rangeClosed(1, 2_000)
+                .filter(i -> i != 777 && i != 1_503)
+                .mapToObj(i -> "Row " + i)
+                .collect(Collectors.toList());
+        assertEquals(expected, written);
+        assertEquals(List.of(777, 1_503), failedRows);
+    }
+
+    @Test
+    void reportsRowsThatFailToParseAndImportsTheRest() throws Exception {
+        List<RowError> errors = new ArrayList<>();
+        AtomicInteger created = new AtomicInteger();
+
+        importPipeline.run(rows(120, 3), ImportMode.CREATE, new ImportListener() {
+            @Override
+            public void rowsCreated(int count) {
+                created.addAndGet(count);
+            }
+
+            @Override
+            public void rowFailed(RowError error) {
+                errors.add(error);
+            }
+        });
+
+        assertEquals(119, created.get());
+        assertEquals(1, errors.size());
+        assertEquals(3, errors.get(0).getRowNumber());
+        assertEquals("Unsupported material type: \"X\"", errors.get(0).getReason());
+    }
+
+    @Test
+    void keepsTheReaderAFixedNumberOfBatchesAheadOfTheWriter() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writerBlocked.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            List<MaterialRecord> inserts = invocation.getArgument(0);
+            inserts.forEach(material -> written.add(material.getName()));
+            return Set.of();
+        }).when(writer).write(anyList(), anyMap());
+
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> {
+            try {
+                importPipeline.run(rows(20_000), ImportMode.CREATE, new ImportListener() { });
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            assertTrue(writerBlocked.await(10, TimeUnit.SECONDS));
+            awaitReaderBlocked();
+
+            // The batch being written, a full queue and the batch waiting for room in it
+            int bound = (2 * PARSE_THREADS + 2) * MaterialImportPipeline.PARSE_BATCH_SIZE;
+            assertTrue(rowsRead.get() <= bound, "Reader ran " + rowsRead.get() + " rows ahead");
+        } finally {
+            release.countDown();
+        }
+
+        running.get(30, TimeUnit.SECONDS);
+        assertEquals(20_000, written.size());
+    }
+
+    @Test
+    void rethrowsAReadFailureAfterTheRowsBeforeIt() {
+        MaterialSource failing = consumer -> {
+            readerThread.set(Thread.currentThread());
+            for (int i = 1; i <= 250; i++) {
+                consumer.accept(row(i));
+            }
+            throw new IOException("Unexpected end of file");
+        };
+
+        IOException e = assertThrows(IOException.class,
+                () -> importPipeline.run(failing, ImportMode.CREATE, new ImportListener() { }));
+
+        assertEquals("Unexpected end of file", e.getMessage());
+        assertFalse(readerThread.get().isAlive());
+    }
+
+    @Test
+    void stopsTheReaderAndJoinsItWhenCancelled() {
+        AtomicInteger chunks = new AtomicInteger();
+        doAnswer(invocation -> {
+            chunks.incrementAndGet();
+            return Set.of();
+        }).when(writer).write(anyList(), anyMap());
+
+        assertThrows(ImportCancelledException.class,
+                () -> importPipeline.run(rows(100_000), ImportMode.CREATE, new ImportListener() {
+                    @Override
+                    public boolean isCancelled() {
+                        return chunks.get() >= 1;
+                    }
+                }));
+
+        assertEquals(1, chunks.get());
+        // run() only returns once the reader thread has ended, long before the source is exhausted
+        assertFalse(readerThread.get().isAlive());
+        assertTrue(rowsRead.get() < 100_000);
+    }
+
+    @Test
+    void failsTheWholeImportWhenAChunkFailsInsideTheCallersTransaction() throws Exception {
+        doThrow(new IllegalStateException("Value too long for column \"name\""))
+                .when(writer).write(anyList(), anyMap());
+        List<RowError> errors = new ArrayList<>();
+        ImportListener listener = new ImportListener() {
+            @Override
+            public void rowFailed(RowError error) {
+                errors.add(error);
+            }
+        };
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(IllegalStateException.class, () -> importPipeline.run(rows(120), ImportMode.CREATE, listener));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertTrue(errors.isEmpty());
+
+        // Without one, the chunks' rows are reported as failed and the import goes on
+        importPipeline.run(rows(120), ImportMode.CREATE, listener);
+        assertEquals(120, errors.size());
+    }
+
+    @Test
+    void matchesLaterRowsByTheNewKeyOfAMaterialThatWasRenamed() throws Exception {
+        ImportIndex index = upsertIndex();
+        List<Map<Long, MaterialRecord>> updates = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<MaterialRecord> inserts = invocation.getArgument(0);
+            inserts.forEach(material -> written.add(material.getName()));
+            updates.add(Map.copyOf(invocation.getArgument(1)));
+            return Set.of();
+        }).when(writer).write(anyList(), anyMap());
+        when(importKeys.buildIndex()).thenReturn(index);
+
+        // Row 1 renames material 1, row 2 updates it by its new name, row 3 has its old name
+        MaterialSource source = consumer -> {
+            consumer.accept(row(1, "Renamed", 1L));
+            consumer.accept(row(2, "Renamed", null));
+            consumer.accept(row(3, "Stored", null));
+        };
+        importPipeline.run(source, ImportMode.UPSERT, new ImportListener() { });
+
+        assertEquals(List.of("Stored"), written);
+        assertEquals(Set.of(1L), updates.get(0).keySet());
+        assertEquals("Renamed", updates.get(0).get(1L).getName());
+    }
+
+    @Test
+    void reportsUpdatesOfMaterialsDeletedDuringTheImportAsFailed() throws Exception {
+        ImportIndex index = upsertIndex();
+        when(importKeys.buildIndex()).thenReturn(index);
+        doAnswer(invocation -> invocation.<Map<Long, MaterialRecord>>getArgument(1).keySet().contains(1L)
+                ? Set.of(1L) : Set.of())
+                .when(writer).write(anyList(), anyMap());
+        List<RowError> errors = new ArrayList<>();
+        AtomicInteger updated = new AtomicInteger();
+
+        MaterialSource source = consumer -> {
+            consumer.accept(row(1, "Changed", 1L));
+            consumer.accept(row(2, "Changed too", 2L));
+        };
+        importPipeline.run(source, ImportMode.UPSERT, new ImportListener() {
+            @Override
+            public void rowsUpdated(int count) {
+                updated.addAndGet(count);
+            }
+
+            @Override
+            public void rowFailed(RowError error) {
+                errors.add(error);
+            }
+        });
+
+        assertEquals(1, updated.get());
+        assertEquals(List.of(new RowError(1, "No material found with id: 1")), errors);
+    }
+
+    /**
+     * Helper method to index two stored desks; materials are keyed by name and every row changes them
+     */
+    private ImportIndex upsertIndex() {
+        when(importKeys.naturalKey(any())).thenAnswer(invocation -> invocation.<MaterialRecord>getArgument(0).getName());
+        when(importKeys.fingerprint(any())).thenAnswer(invocation -> "row-" + System.identityHashCode(invocation.getArgument(0)));
+        ImportIndex index = new ImportIndex();
+        index.addStored(1L, "Desk", "Stored", "stored-1");
+        index.addStored(2L, "Desk", "Other", "stored-2");
+        return index;
+    }
+
+    /**
+     * Helper method to wait until the reader stops taking rows, i.e. it is blocked on the full queue
+     */
+    private void awaitReaderBlocked() throws InterruptedException {
+        int last = -1;
+        while (rowsRead.get() != last) {
+            last = rowsRead.get();
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * Helper method to build a source of numbered rows; the given row numbers fail to parse
+     */
+    private MaterialSource rows(int count, int... badRows) {
+        return consumer -> {
+            readerThread.set(Thread.currentThread());
+            for (int i = 1; i <= count; i++) {
+                rowsRead.incrementAndGet();
+                int rowNumber = i;
+                boolean bad = IntStream.of(badRows).anyMatch(badRow -> badRow == rowNumber);
+                consumer.accept(bad ? badRow(rowNumber) : row(rowNumber));
+            }
+        };
+    }
+
+    private static MaterialRow row(int rowNumber) {
+        return row(rowNumber, "Row " + rowNumber, null);
+    }
+
+    private static MaterialRow row(int rowNumber, String name, Long id) {
+        String[] cells = new String[MaterialRow.COLUMN_COUNT];
+        cells[0] = name;
+        cells[MaterialRow.ID_COLUMN] = id != null ? id.toString() : null;
+        return new MaterialRow(rowNumber, cells);
+    }
+
+    private static MaterialRow badRow(int rowNumber) {
+        String[] cells = new String[MaterialRow.COLUMN_COUNT];
+        cells[0] = "Bad row " + rowNumber;
+        return new MaterialRow(rowNumber, cells);
+    }
+}
@@ -0,0 +1,98 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.dto.MaterialSliceDTO;
+import com.attvin.dto.MaterialSort;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialTextFormat;
+import com.attvin.service.MaterialService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MaterialListingTest {
+
+    private static final List<String> NAMES = List.of("Echo", "alpha", "Delta", "Charlie", "Bravo");
+
+    @Autowired
+    private MaterialService materialService;
+
+    @BeforeEach
+    void importMaterials() {
+        StringBuilder ndjson = new StringBuilder();
+        for (String name : NAMES) {
+            ndjson.append("{\"name\":\"").append(name).append("\",\"category\":\"Keyset\",\"materialType\":\"DRAWER_UNIT\",")
+                    .append("\"materialCondition\":\"Good\",\"color\":\"Grey\",\"width\":40,\"height\":60,\"depth\":45,\"hasWheels\":true}\n");
+        }
+        materialService.importMaterials(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)),
+                MaterialTextFormat.NDJSON, ImportMode.CREATE);
+    }
+
+    @Test
+    void pagesThroughNewestFirstWithoutGapsOrRepeats() {
+        List<MaterialRecordDTO> all = scroll(MaterialSort.NEWEST, 2);
+
+        assertEquals(NAMES.size(), all.size());
+        for (int i = 1; i < all.size(); i++) {
+            MaterialRecordDTO previous = all.get(i - 1);
+            MaterialRecordDTO current = all.get(i);
+            int byDate = previous.getDateAdded().compareTo(current.getDateAdded());
+            assertTrue(byDate > 0 || (byDate == 0 && previous.getId() > current.getId()));
+        }
+    }
+
+    @Test
+    void pagesThroughByName() {
+        List<String> names = scroll(MaterialSort.NAME, 2).stream().map(MaterialRecordDTO::getName).toList();
+
+        List<String> expected = new ArrayList<>(NAMES);
+        expected.sort(String::compareTo);
+        assertEquals(expected, names);
+    }
+
+    @Test
+    void countsOnlyWhenAsked() {
+        MaterialSliceDTO first = materialService.listMaterials("Keyset", null, null, MaterialSort.NAME, null, 2, true);
+        assertEquals(NAMES.size(), first.getTotalCount());
+
+        MaterialSliceDTO second = materialService.listMaterials("Keyset", null, null, MaterialSort.NAME, first.getNextCursor(), 2, false);
+        assertNull(second.getTotalCount());
+    }
+
+    @Test
+    void rejectsForeignOrDamagedCursors() {
+        String cursor = materialService.listMaterials("Keyset", null, null, MaterialSort.NAME, null, 2, false).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> materialService.listMaterials("Keyset", null, null, MaterialSort.NEWEST, cursor, 2, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> materialService.listMaterials("Keyset", null, null, MaterialSort.NAME, "not a cursor", 2, false));
+    }
+
+    private List<MaterialRecordDTO> scroll(MaterialSort sort, int size) {
+        List<MaterialRecordDTO> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            MaterialSliceDTO slice = materialService.listMaterials("Keyset", "DrawerUnit", "Good", sort, cursor, size, false);
+            all.addAll(slice.getContent());
+            cursor = slice.getNextCursor();
+        } while (cursor != null);
+        return all;
+    }
+}
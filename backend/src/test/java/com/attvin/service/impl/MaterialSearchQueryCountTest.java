@@ -0,0 +1,90 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.model.DrawerUnit;
+import com.attvin.model.MaterialPicture;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that loading a search page costs a constant number of queries,
+ * whatever the page size and however many pictures each material has.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MaterialSearchQueryCountTest {
+
+    private static final String CATEGORY = "Query Count";
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void insertMaterials() {
+        for (int i = 0; i < 60; i++) {
+            DrawerUnit unit = new DrawerUnit("Query Count Unit " + i, CATEGORY, LocalDateTime.now(),
+                    "Reusable", null, "Grey", 60.0, 40.0, 45.0, true);
+            unit.addPicture(picture("front.jpg", true));
+            unit.addPicture(picture("side.jpg", false));
+            materialRepository.save(unit);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void searchPageRunsConstantNumberOfQueries() {
+        long smallPage = countStatements(5);
+        long largePage = countStatements(50);
+
+        // page query + count query + one picture metadata query
+        assertEquals(3, smallPage);
+        assertEquals(smallPage, largePage);
+    }
+
+    private long countStatements(int pageSize) {
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        Page<MaterialRecordDTO> page = materialService.searchMaterials(
+                CATEGORY, null, null, null, PageRequest.of(0, pageSize));
+
+        assertEquals(pageSize, page.getNumberOfElements());
+        page.forEach(dto -> assertEquals(2, dto.getPictures().size()));
+        assertEquals(0, statistics.getCollectionLoadCount(), "Pictures collections must not be initialized");
+
+        long statements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+        return statements;
+    }
+
+    private static MaterialPicture picture(String fileName, boolean primary) {
+        // Search never reads picture content, so the storage key does not need to exist
+        return new MaterialPicture(null, "0".repeat(64), LocalDateTime.now(), primary, fileName,
+                1024L, "image/jpeg", null);
+    }
+}
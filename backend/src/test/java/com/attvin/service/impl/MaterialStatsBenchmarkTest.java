@@ -0,0 +1,97 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialStatsDTO;
+import com.attvin.model.DrawerUnit;
+import com.attvin.model.MaterialRecord;
+import com.attvin.repository.MaterialRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that the stats are aggregated by the database: the number of
+ * statements and loaded entities must not grow with the size of the inventory.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MaterialStatsBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterialStatsBenchmarkTest.class);
+
+    @Autowired
+    private MaterialStatsCounters materialStatsCounters;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void statsCostStaysFlatAsRowCountGrows() {
+        MaterialStatsDTO before = materialStatsCounters.loadFromDatabase();
+
+        long smallStatements = measure(500);
+        long largeStatements = measure(5000);
+
+        assertEquals(smallStatements, largeStatements,
+                "Stats should issue the same number of statements regardless of row count");
+
+        MaterialStatsDTO after = materialStatsCounters.loadFromDatabase();
+        assertEquals(before.getTotalCount() + 5500, after.getTotalCount());
+        assertEquals(before.getTypeCounts().getOrDefault("DrawerUnit", 0L) + 5500,
+                after.getTypeCounts().get("DrawerUnit"));
+        assertEquals(before.getCategoryCounts().getOrDefault("Benchmark", 0L) + 5500,
+                after.getCategoryCounts().get("Benchmark"));
+        // Half of the generated rows are dated outside the 30 day window
+        assertEquals(before.getRecentAdditionsCount() + 2750, after.getRecentAdditionsCount());
+    }
+
+    /**
+     * Inserts the given number of rows, then runs the stats query and returns
+     * the number of JDBC statements it needed.
+     */
+    private long measure(int rows) {
+        insertMaterials(rows);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        long start = System.nanoTime();
+        materialStatsCounters.loadFromDatabase();
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+
+        assertEquals(0, statistics.getEntityLoadCount(), "Stats must not hydrate entities");
+        logger.info("Stats over +{} rows: {} statements, {} us",
+                rows, statistics.getPrepareStatementCount(), elapsedMicros);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void insertMaterials(int rows) {
+        List<MaterialRecord> materials = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            LocalDateTime dateAdded = LocalDateTime.now().minusDays(i % 2 == 0 ? 1 : 60);
+            materials.add(new DrawerUnit("Benchmark Unit " + i, "Benchmark", dateAdded,
+                    i % 3 == 0 ? "Damaged" : "Reusable", null, "Grey", 60.0, 40.0, 45.0, i % 2 == 0));
+        }
+        materialRepository.saveAll(materials);
+    }
+}
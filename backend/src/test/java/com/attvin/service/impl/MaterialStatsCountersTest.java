@@ -0,0 +1,123 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.MaterialRecordDTO;
+import com.attvin.dto.MaterialStatsDTO;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.Ordered;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class MaterialStatsCountersTest {
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialStatsCounters materialStatsCounters;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void countersFollowCommittedWrites() {
+        MaterialStatsDTO before = materialService.getMaterialStats();
+
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName("Counter Test Door");
+        dto.setCategory("Counter Test");
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("LEFT");
+        MaterialRecordDTO created = materialService.createMaterial(dto, null);
+
+        MaterialStatsDTO afterCreate = materialService.getMaterialStats();
+        assertEquals(before.getTotalCount() + 1, afterCreate.getTotalCount());
+        assertEquals(1L, afterCreate.getCategoryCounts().get("Counter Test"));
+        assertEquals(before.getRecentAdditionsCount() + 1, afterCreate.getRecentAdditionsCount());
+        assertSameAsDatabase(afterCreate);
+
+        dto.setMaterialCondition("Damaged");
+        materialService.updateMaterial(created.getId(), dto);
+        assertSameAsDatabase(materialService.getMaterialStats());
+
+        materialService.deleteMaterial(created.getId());
+        MaterialStatsDTO afterDelete = materialService.getMaterialStats();
+        assertEquals(before.getTotalCount(), afterDelete.getTotalCount());
+        assertEquals(before.getConditionCounts(), afterDelete.getConditionCounts());
+        assertSameAsDatabase(afterDelete);
+    }
+
+    @Test
+    void reconcileDuringACommitDoesNotCountTheChangeTwice() {
+        MaterialStatsDTO before = materialService.getMaterialStats();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            materialService.createMaterial(door("Reconcile Test Door"), null);
+            // Runs once the row is committed, but before the counters' after-commit listener
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+
+                @Override
+                public void afterCommit() {
+                    CompletableFuture.runAsync(materialStatsCounters::reconcile).join();
+                }
+            });
+        });
+
+        MaterialStatsDTO after = materialService.getMaterialStats();
+        assertEquals(before.getTotalCount() + 1, after.getTotalCount());
+        assertSameAsDatabase(after);
+    }
+
+    @Test
+    void countsRecentAdditionsByHour() {
+        LocalDateTime since = LocalDateTime.now().minusDays(30);
+
+        assertEquals(materialRepository.countByDateAddedAfter(since),
+                materialStatsCounters.loadFromDatabase().getRecentAdditionsCount());
+    }
+
+    private static MaterialRecordDTO door(String name) {
+        MaterialRecordDTO dto = new MaterialRecordDTO();
+        dto.setName(name);
+        dto.setCategory("Reconcile Test");
+        dto.setMaterialType("DOOR");
+        dto.setMaterialCondition("Reusable");
+        dto.setColor("White");
+        dto.setHeight(210.0);
+        dto.setWidth(90.0);
+        dto.setSwingDirection("LEFT");
+        return dto;
+    }
+
+    private void assertSameAsDatabase(MaterialStatsDTO actual) {
+        MaterialStatsDTO expected = materialStatsCounters.loadFromDatabase();
+        assertEquals(expected.getTotalCount(), actual.getTotalCount());
+        assertEquals(expected.getConditionCounts(), actual.getConditionCounts());
+        assertEquals(expected.getCategoryCounts(), actual.getCategoryCounts());
+        assertEquals(expected.getTypeCounts(), actual.getTypeCounts());
+        assertEquals(expected.getRecentAdditionsCount(), actual.getRecentAdditionsCount());
+    }
+}
@@ -0,0 +1,144 @@
+package com.attvin.service.impl;
+
+import com.attvin.dto.ImportSummaryDTO;
+import com.attvin.dto.MaterialExportFilter;
+import com.attvin.io.ImportMode;
+import com.attvin.io.MaterialColumns;
+import com.attvin.io.MaterialTextFormat;
+import com.attvin.model.Desk;
+import com.attvin.model.MaterialRecord;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MaterialTextImportExportTest {
+
+    private static final String NOTES = "Line one, \"quoted\"\nline two";
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Test
+    void importsNdjsonAndRoundTripsThroughBothFormats() {
+        long before = materialRepository.count();
+        String ndjson = """
+                {"name":"Text desk","category":"Furniture","materialType":"DESK","materialCondition":"Good","color":"Oak","notes":"Line one, \\"quoted\\"\\nline two","width":150,"depth":75,"deskType":"STRAIGHT_DESK","heightAdjustable":true,"maximumHeight":120.5,"pictures":[]}
+
+                {"name":"Text drawers","category":"Furniture","materialType":"DrawerUnit","materialCondition":"Fair","color":"Grey","width":40,"height":60,"depth":45,"hasWheels":false}
+                {"name":"Broken line",
+                """;
+
+        ImportSummaryDTO imported = materialService.importMaterials(bytes(ndjson), MaterialTextFormat.NDJSON, ImportMode.CREATE);
+        assertEquals(2, imported.getRowsCreated());
+        assertEquals(1, imported.getRowsFailed());
+        assertEquals(before + 2, materialRepository.count());
+
+        Desk desk = (Desk) materialRepository.findAll().stream()
+                .filter(material -> material.getName().equals("Text desk"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(NOTES, desk.getNotes());
+        assertEquals(120.5, desk.getMaximumHeight());
+        assertTrue(desk.getHeightAdjustable());
+
+        // CSV: a header row, quoted fields where needed, and the export re-imports without changes
+        String csv = export(MaterialTextFormat.CSV);
+        assertTrue(csv.startsWith(String.join(",", MaterialColumns.HEADERS) + "\r\n"));
+        assertTrue(csv.contains("Text desk,Furniture,Desk,Good,Oak,\"Line one, \"\"quoted\"\"\nline two\",150,120.5,75,"));
+        assertUnchangedOnReimport(csv, MaterialTextFormat.CSV);
+
+        String exportedNdjson = export(MaterialTextFormat.NDJSON);
+        assertTrue(exportedNdjson.contains("{\"name\":\"Text drawers\",\"category\":\"Furniture\","
+                + "\"materialType\":\"DrawerUnit\",\"materialCondition\":\"Fair\",\"color\":\"Grey\","
+                + "\"width\":40.0,\"height\":60.0,\"depth\":45.0,\"hasWheels\":false,\"id\":"));
+        assertUnchangedOnReimport(exportedNdjson, MaterialTextFormat.NDJSON);
+        assertEquals(before + 2, materialRepository.count());
+    }
+
+    @Test
+    void matchesCsvColumnsByHeaderName() {
+        // Any order, header or field names, and unknown columns are ignored
+        String csv = "Material Type,name,Supplier,Category,Condition,color,Width,Height,Depth,has_wheels\r\n"
+                + "DRAWER_UNIT,Reordered drawers,ACME,Furniture,Good,White,40,60,45,true\r\n";
+
+        ImportSummaryDTO imported = materialService.importMaterials(bytes(csv), MaterialTextFormat.CSV, ImportMode.CREATE);
+        assertEquals(1, imported.getRowsCreated());
+
+        MaterialRecord drawers = materialRepository.findAll().stream()
+                .filter(material -> material.getName().equals("Reordered drawers"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("White", drawers.getColor());
+    }
+
+    @Test
+    void exportsOnlyMatchingMaterialsModifiedSinceTheGivenTime() throws Exception {
+        String ndjson = """
+                {"name":"Delta desk","category":"Delta","materialType":"DESK","materialCondition":"Good","color":"Oak","width":150,"depth":75,"deskType":"STRAIGHT_DESK","heightAdjustable":false,"maximumHeight":75}
+                {"name":"Delta drawers","category":"Delta","materialType":"DRAWER_UNIT","materialCondition":"Fair","color":"Grey","width":40,"height":60,"depth":45,"hasWheels":true}
+                {"name":"Other drawers","category":"Other","materialType":"DRAWER_UNIT","materialCondition":"Fair","color":"Grey","width":40,"height":60,"depth":45,"hasWheels":true}
+                """;
+        ImportSummaryDTO created = materialService.importMaterials(bytes(ndjson), MaterialTextFormat.NDJSON, ImportMode.CREATE);
+        assertEquals(3, created.getRowsCreated());
+
+        MaterialExportFilter filter = new MaterialExportFilter();
+        filter.setCategory("Delta");
+        assertEquals(List.of("Delta desk", "Delta drawers"), exportedNames(filter));
+        filter.setType("DrawerUnit");
+        assertEquals(List.of("Delta drawers"), exportedNames(filter));
+
+        LocalDateTime lastSync = LocalDateTime.now();
+        Thread.sleep(10);
+        materialService.importMaterials(bytes(ndjson.replace("\"color\":\"Oak\"", "\"color\":\"Walnut\"")),
+                MaterialTextFormat.NDJSON, ImportMode.UPSERT);
+
+        MaterialExportFilter delta = new MaterialExportFilter();
+        delta.setModifiedSince(lastSync);
+        assertEquals(List.of("Delta desk"), exportedNames(delta));
+    }
+
+    private List<String> exportedNames(MaterialExportFilter filter) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        materialService.exportMaterials(out, MaterialTextFormat.CSV, filter);
+        return out.toString(StandardCharsets.UTF_8).lines()
+                .skip(1)
+                .map(line -> line.substring(0, line.indexOf(',')))
+                .toList();
+    }
+
+    private void assertUnchangedOnReimport(String exported, MaterialTextFormat format) {
+        ImportSummaryDTO reimported = materialService.importMaterials(bytes(exported), format, ImportMode.UPSERT);
+        assertEquals(0, reimported.getRowsCreated());
+        assertEquals(0, reimported.getRowsUpdated());
+        assertTrue(reimported.getRowsSkipped() >= 2);
+    }
+
+    private String export(MaterialTextFormat format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        materialService.exportMaterials(out, format, new MaterialExportFilter());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayInputStream bytes(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,89 @@
+package com.attvin.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalDiskPictureStorageTest {
+
+    @TempDir
+    Path root;
+
+    private LocalDiskPictureStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalDiskPictureStorage(root.toString());
+    }
+
+    @Test
+    void storesContentUnderItsSha256() throws Exception {
+        byte[] content = "picture".getBytes(StandardCharsets.UTF_8);
+        StoredPicture stored = storage.store(new ByteArrayInputStream(content));
+
+        String expectedKey = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(expectedKey, stored.getKey());
+        assertEquals(content.length, stored.getSize());
+        try (InputStream in = storage.open(stored.getKey())) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void deduplicatesIdenticalUploadsAndLeavesNoTempFiles() throws IOException {
+        StoredPicture first = storage.store(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        StoredPicture second = storage.store(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        StoredPicture other = storage.store(new ByteArrayInputStream(new byte[] {4, 5, 6}));
+
+        assertEquals(first.getKey(), second.getKey());
+        assertNotEquals(first.getKey(), other.getKey());
+        try (Stream<Path> files = Files.walk(root)) {
+            assertEquals(2, files.filter(Files::isRegularFile).count());
+        }
+
+        storage.delete(first.getKey());
+        assertFalse(storage.exists(first.getKey()));
+        assertTrue(storage.exists(other.getKey()));
+    }
+
+    @Test
+    void keepsContentStoredAgainAfterTheCutoff() throws IOException {
+        Instant cutoff = Instant.now().minusSeconds(60);
+        StoredPicture stored = storage.store(new ByteArrayInputStream(new byte[] {7, 8, 9}));
+        Path file = root.resolve(stored.getKey().substring(0, 2)).resolve(stored.getKey().substring(2, 4))
+                .resolve(stored.getKey());
+        Files.setLastModifiedTime(file, FileTime.from(cutoff.minusSeconds(60)));
+
+        // An identical upload hands the existing content out again
+        storage.store(new ByteArrayInputStream(new byte[] {7, 8, 9}));
+        assertFalse(storage.deleteIfStoredBefore(stored.getKey(), cutoff));
+        assertTrue(storage.exists(stored.getKey()));
+
+        assertTrue(storage.deleteIfStoredBefore(stored.getKey(), Instant.now().plusSeconds(60)));
+        assertFalse(storage.exists(stored.getKey()));
+    }
+
+    @Test
+    void rejectsKeysThatAreNotHashes() {
+        assertThrows(IllegalArgumentException.class, () -> storage.open("../../etc/passwd"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.attvin.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PictureThumbnailsTest {
+
+    @TempDir
+    Path root;
+
+    private LocalDiskPictureStorage storage;
+    private PictureThumbnails thumbnails;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalDiskPictureStorage(root.toString());
+        // Run generation on the calling thread so the results can be checked directly
+        thumbnails = new PictureThumbnails(storage, Runnable::run);
+    }
+
+    @Test
+    void generatesEverySizeThatIsSmallerThanTheOriginal() throws IOException {
+        String key = storePng(2000, 1000);
+
+        thumbnails.enqueue(key);
+
+        assertDimensions(key, 160, 160, 80);
+        assertDimensions(key, 480, 480, 240);
+        assertDimensions(key, 1280, 1280, 640);
+        assertEquals(Optional.of(480), thumbnails.findSize(key, 300));
+        assertEquals(Optional.empty(), thumbnails.findSize(key, 1600));
+    }
+
+    @Test
+    void doesNotUpscaleSmallPictures() throws IOException {
+        String key = storePng(300, 200);
+
+        thumbnails.enqueue(key);
+
+        assertDimensions(key, 160, 160, 107);
+        assertEquals(-1, storage.variantSize(key, PictureThumbnails.variantName(480)));
+        // Nothing larger exists, so the original is served
+        assertEquals(Optional.empty(), thumbnails.findSize(key, 480));
+    }
+
+    @Test
+    void deletingThePictureRemovesItsThumbnails() throws IOException {
+        String key = storePng(800, 600);
+        thumbnails.enqueue(key);
+
+        storage.delete(key);
+
+        assertEquals(-1, storage.variantSize(key, PictureThumbnails.variantName(160)));
+        assertFalse(storage.exists(key));
+    }
+
+    private String storePng(int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", png);
+        return storage.store(new ByteArrayInputStream(png.toByteArray())).getKey();
+    }
+
+    private void assertDimensions(String key, int size, int width, int height) throws IOException {
+        try (InputStream content = storage.openVariant(key, PictureThumbnails.variantName(size))) {
+            BufferedImage image = ImageIO.read(content);
+            assertEquals(width, image.getWidth());
+            assertEquals(height, image.getHeight());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.attvin.storage;
+
+import com.attvin.event.PicturesRemovedEvent;
+import com.attvin.model.MaterialPicture;
+import com.attvin.repository.MaterialPictureRepository;
+import com.attvin.repository.MaterialRepository;
+import com.attvin.service.MaterialService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "material.pictures.cleanup.grace-minutes=0")
+@ActiveProfiles("test")
+class UnreferencedPictureCleanerTest {
+
+    @Autowired
+    private MaterialService materialService;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private MaterialPictureRepository materialPictureRepository;
+
+    @Autowired
+    private PictureStorage pictureStorage;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void releasesContentStoredByARolledBackTransaction() throws Exception {
+        byte[] content = "rolled back picture".getBytes(StandardCharsets.UTF_8);
+        Long materialId = materialRepository.findAll().get(0).getId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            materialService.addPicturesToMaterial(materialId,
+                    List.of(new MockMultipartFile("pictures", "lost.png", "image/png", content)));
+            assertTrue(pictureStorage.exists(sha256(content)));
+            status.setRollbackOnly();
+        });
+
+        assertFalse(pictureStorage.exists(sha256(content)));
+    }
+
+    @Test
+    void keepsContentThatIsStillReferenced() {
+        MaterialPicture picture = materialPictureRepository.findAll().get(0);
+
+        eventPublisher.publishEvent(new PicturesRemovedEvent(List.of(picture.getStorageKey())));
+
+        assertTrue(pictureStorage.exists(picture.getStorageKey()));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -119,7 +119,7 @@ const MaterialsGrid: React.FC<MaterialsGridProps> = ({ materials }) => {
                       ? `/api/materials/pictures/${
                           material.pictures.find((p) => p.isPrimary)?.id ||
                           material.pictures[0].id
-                        }`
+                        }?size=480`
                       : getFallbackImageByType(
                           material.category.toLowerCase(),
                           material.materialType